@@ -0,0 +1,753 @@
+package JavaBeta;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
+import javafx.concurrent.Task;
+import javafx.fxml.FXML;
+import javafx.geometry.Side;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
+import javafx.util.Duration;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class Ao3Controller {
+
+    // --- FXML UI Elements ---
+    @FXML private TextField anyField, titleField, authorField, tagsField;
+    @FXML private Button searchButton, refreshLibraryButton;
+    @FXML private Button clearButton; // Variable for the Clear button added
+    @FXML private CheckBox liveSearchCheckBox;
+    @FXML private ProgressIndicator loadingIndicator;
+    @FXML private ListView<Work> resultsListView;
+    @FXML private TextField filterIncludeField, filterExcludeField, filterMinWordsField, filterMaxWordsField;
+    @FXML private ChoiceBox<String> filterRatingChoice;
+    @FXML private ChoiceBox<ResultIndex.Completion> filterCompletionChoice;
+    @FXML private ChoiceBox<ResultIndex.SortKey> filterSortChoice;
+    @FXML private Label filterStatusLabel;
+    @FXML private TabPane mainTabPane;
+    @FXML private ListView<LibraryEntry> libraryListView;
+    @FXML private TextField librarySearchField;
+    @FXML private Button checkUpdatesButton, exportLibraryButton;
+    @FXML private HBox updateProgressBox;
+    @FXML private ProgressBar updateProgressBar;
+    @FXML private Label updateStatusLabel;
+    @FXML private TextArea syncSourcesArea;
+    @FXML private Spinner<Double> syncRateSpinner;
+    @FXML private Button syncStartButton, syncCancelButton;
+    @FXML private ProgressBar syncProgressBar;
+    @FXML private Label syncStatusLabel, syncStatsLabel;
+
+    private Library library;
+    private LibraryCatalog libraryCatalog;
+    private FullTextIndex fullTextIndex;
+    private final Map<String, String> librarySnippets = new HashMap<>(); // fileName -> snippet of the current search
+    private final AtomicBoolean libraryRefreshQueued = new AtomicBoolean(false);
+    private SearchPager searchPager;
+    private final SearchMemo searchMemo = new SearchMemo();
+    private final TagTrie seenTags = new TagTrie();
+    private final PauseTransition liveSearchDelay = new PauseTransition(Duration.millis(400));
+    private final PauseTransition prefetchDelay = new PauseTransition(Duration.millis(300));
+    private Work hoveredWork;
+    // Every loaded result, in AO3's order; the list view shows it through the filter and sort below
+    private final ObservableList<Work> searchResults = FXCollections.observableArrayList();
+    private final FilteredList<Work> filteredResults = new FilteredList<>(searchResults);
+    private final SortedList<Work> sortedResults = new SortedList<>(filteredResults);
+    private final ResultIndex resultIndex = new ResultIndex();
+    private ResultIndex.Query resultQuery = ResultIndex.Query.ALL;
+    private int filterGeneration = 0;
+    private boolean filterQueued = false;
+    private SyncJob syncJob;
+    private UpdateChecker updateChecker;
+    private Task<LibraryExport.Result> exportTask;
+
+    @FXML private ToggleButton themeToggleButton;
+
+    private String darkThemePath;
+
+    @FXML
+    protected void onThemeToggle() {
+        Scene scene = mainTabPane.getScene(); // Get the scene from any known control
+        if (scene == null) {
+            System.err.println("Error: Could not get scene to toggle theme.");
+            return;
+        }
+
+        // Initialize the path if it's not already set
+        if (darkThemePath == null) {
+            URL stylesheetUrl = getClass().getResource("/JavaBeta/styles.css"); // Or styles.css
+            if (stylesheetUrl != null) {
+                darkThemePath = stylesheetUrl.toExternalForm();
+            } else {
+                showError("Could not find the theme stylesheet!");
+                themeToggleButton.setDisable(true); // Disable button if CSS is missing
+                return;
+            }
+        }
+
+        // Check if the button is selected (meaning dark mode should be ON)
+        if (themeToggleButton.isSelected()) {
+            // Add the dark theme stylesheet
+            scene.getStylesheets().add(darkThemePath);
+            themeToggleButton.setText("Light Mode"); // Update button text
+        } else {
+            // Remove the dark theme stylesheet
+            scene.getStylesheets().remove(darkThemePath);
+            themeToggleButton.setText("Dark Mode"); // Update button text
+        }
+    }
+
+    /** The library as opened in the background, with the sources of a bulk download that didn't finish. */
+    private record OpenedLibrary(Library library, List<String> interruptedSources) {
+    }
+
+    /** Wires up the controls only; anything that touches the disk or network waits for {@link #startBackgroundWork()}. */
+    @FXML
+    public void initialize() {
+        resultsListView.setItems(sortedResults);
+        resultsListView.getSelectionModel().selectedItemProperty().addListener((obs, old, work) -> {
+            if (work != null) loadAndShowStory(work);
+        });
+        initResultFilter();
+        initLiveSearch();
+        initPrefetch();
+
+        // Scrolling to the last result pulls in the next page of the current search
+        resultsListView.setCellFactory(lv -> new ListCell<>() {
+            @Override
+            protected void updateItem(Work work, boolean empty) {
+                super.updateItem(work, empty);
+                setText(empty || work == null ? null : work + "\n" + work.statsLine());
+                if (!empty && searchPager != null && getIndex() == lv.getItems().size() - 1) {
+                    searchPager.requestNextPage();
+                }
+            }
+
+            {
+                setOnMouseEntered(e -> {
+                    if (getItem() == null) return;
+                    hoveredWork = getItem();
+                    prefetchDelay.playFromStart();
+                });
+            }
+        });
+
+        libraryListView.getSelectionModel().selectedItemProperty().addListener((obs, old, entry) -> {
+            if (entry != null) loadStoryFromLibrary(entry);
+        });
+
+        libraryListView.setCellFactory(lv -> new ListCell<>() {
+            @Override
+            protected void updateItem(LibraryEntry entry, boolean empty) {
+                super.updateItem(entry, empty);
+                String snippet = empty || entry == null ? null : librarySnippets.get(entry.fileName());
+                setText(empty || entry == null ? null : snippet == null ? entry.toString() : entry + "\n" + snippet);
+            }
+        });
+        librarySearchField.textProperty().addListener((obs, oldText, newText) -> {
+            if (newText.isBlank()) onLibrarySearch();
+        });
+
+        MenuItem deleteItem = new MenuItem("Delete from Library");
+        deleteItem.setOnAction(e -> deleteFromLibrary(libraryListView.getSelectionModel().getSelectedItem()));
+        ContextMenu libraryMenu = new ContextMenu();
+        for (WorkExporter exporter : WorkExporter.all()) {
+            MenuItem exportItem = new MenuItem("Export as " + exporter.description() + "...");
+            exportItem.setOnAction(e -> exportFromLibrary(libraryListView.getSelectionModel().getSelectedItem(), exporter));
+            libraryMenu.getItems().add(exportItem);
+        }
+        libraryMenu.getItems().addAll(new SeparatorMenuItem(), deleteItem);
+        libraryListView.setContextMenu(libraryMenu);
+
+        syncRateSpinner.setValueFactory(new SpinnerValueFactory.DoubleSpinnerValueFactory(
+                0.1, 5.0, SyncJob.DEFAULT_REQUESTS_PER_SECOND, 0.1));
+        syncRateSpinner.valueProperty().addListener((obs, oldRate, newRate) -> {
+            if (syncJob != null && newRate != null) syncJob.setRequestsPerSecond(newRate);
+        });
+    }
+
+    /**
+     * Start-up work that used to hold up the first frame, run once the main window is showing: the
+     * library (directories, catalog, index) is opened and listed off the JavaFX thread, the connection
+     * to AO3 is opened ahead of the first search, and the reader's classes are loaded for its prewarm.
+     */
+    public void startBackgroundWork() {
+        Thread.ofVirtual().name("startup-warmup").start(() -> {
+            Ao3Client.get().warmUp();
+            ReaderWindows.preloadClasses();
+        });
+        FxFutures.onFxThread(LibraryIO.shared().read(() -> {
+                    // One read of the catalog file, however many works the library holds
+                    Library opened = Library.shared();
+                    return new OpenedLibrary(opened, SyncJob.interruptedSources(opened.catalog()));
+                }),
+                opened -> {
+                    library = opened.library();
+                    libraryCatalog = library.catalog();
+                    libraryCatalog.addListener(this::scheduleLibraryRefresh);
+                    fullTextIndex = library.index();
+                    populateLibraryListView();
+                    reconcileLibrary();
+                    if (!opened.interruptedSources().isEmpty() && syncSourcesArea.getText().isBlank()) {
+                        syncSourcesArea.setText(String.join("\n", opened.interruptedSources()));
+                        syncStatusLabel.setText("An earlier bulk download did not finish. Press Start to resume it.");
+                    }
+                    Startup.libraryListed();
+                    ReaderWindows.shared().prewarmSoon();
+                },
+                e -> {
+                    Startup.libraryListed();
+                    showError("Could not open library: " + e.getMessage());
+                });
+    }
+
+    // --- Bulk download ---
+    @FXML
+    protected void onSyncStartClick() {
+        if (libraryCatalog == null) return;
+        List<String> sources = syncSourcesArea.getText().lines().filter(line -> !line.isBlank()).toList();
+        if (sources.isEmpty()) {
+            showInfo("Enter at least one work URL, series, user page or search query.");
+            return;
+        }
+
+        syncJob = new SyncJob(sources, library, syncRateSpinner.getValue());
+        syncProgressBar.progressProperty().bind(syncJob.progressProperty());
+        syncStatusLabel.textProperty().bind(syncJob.statusProperty());
+        syncStatsLabel.textProperty().bind(Bindings.createStringBinding(() -> String.format(
+                        "%d of %d saved, %d failed  |  %.1f works/min  |  %s",
+                        syncJob.completedProperty().get(), syncJob.totalProperty().get(), syncJob.failedProperty().get(),
+                        syncJob.worksPerMinuteProperty().get(),
+                        syncJob.etaProperty().get().isEmpty() ? "ETA unknown" : "ETA " + syncJob.etaProperty().get()),
+                syncJob.completedProperty(), syncJob.totalProperty(), syncJob.failedProperty(),
+                syncJob.worksPerMinuteProperty(), syncJob.etaProperty()));
+        syncStartButton.disableProperty().bind(syncJob.runningProperty());
+        syncCancelButton.disableProperty().bind(syncJob.runningProperty().not());
+        syncSourcesArea.disableProperty().bind(syncJob.runningProperty());
+        syncJob.start();
+    }
+
+    @FXML
+    protected void onSyncCancelClick() {
+        if (syncJob != null) syncJob.cancel();
+    }
+
+    @FXML
+    protected void onSearchButtonClick() {
+        String query = buildSearchQuery();
+        if (query.isEmpty()) {
+            showInfo("Please fill in at least one search field.");
+            return;
+        }
+
+        liveSearchDelay.stop();
+        startSearch(query);
+    }
+
+    private void startSearch(String query) {
+        if (searchPager != null) {
+            searchMemo.remember(searchPager);
+            searchPager.cancel(); // Interrupts its requests, so a late page can't land in the new results
+        }
+        searchResults.clear();
+
+        // Page 1 streams straight into the list; later pages are appended as the list is scrolled.
+        // A query searched a moment ago is shown again from memory.
+        SearchPager.Snapshot known = searchMemo.recall(query);
+        SearchPager pager = known != null
+                ? SearchPager.resume(known, searchResults, e -> showError("Failed to fetch works. Check connection."))
+                : new SearchPager(query, searchResults, e -> showError("Failed to fetch works. Check connection."));
+        pager.loadingProperty().addListener((obs, wasLoading, isLoading) -> {
+            loadingIndicator.setVisible(isLoading && searchResults.isEmpty());
+            searchButton.setDisable(isLoading);
+        });
+        searchPager = pager;
+        pager.start();
+    }
+
+    /**
+     * Clears the text from all search input fields.
+     */
+    @FXML
+    protected void onClearButtonClick() {
+        // Clear text fields
+        anyField.clear();
+        titleField.clear();
+        authorField.clear();
+        tagsField.clear();
+
+        // Clear the search results list
+        liveSearchDelay.stop();
+        stopSearch();
+    }
+
+    private void stopSearch() {
+        if (searchPager != null) {
+            searchMemo.remember(searchPager);
+            searchPager.cancel();
+        }
+        searchPager = null;
+        searchResults.clear();
+    }
+
+    // --- Live search ---
+    private void initLiveSearch() {
+        // Each keystroke restarts the delay; the search runs once typing pauses
+        liveSearchDelay.setOnFinished(e -> {
+            String query = buildSearchQuery();
+            if (query.isEmpty()) {
+                stopSearch();
+            } else if (searchPager == null
+                    || !SearchMemo.normalize(searchPager.getQuery()).equals(SearchMemo.normalize(query))) {
+                startSearch(query);
+            }
+        });
+        for (TextField field : List.of(anyField, titleField, authorField, tagsField)) {
+            field.textProperty().addListener((obs, oldText, newText) -> {
+                if (liveSearchCheckBox.isSelected()) liveSearchDelay.playFromStart();
+            });
+        }
+        liveSearchCheckBox.selectedProperty().addListener((obs, was, live) -> {
+            if (live) liveSearchDelay.playFromStart();
+        });
+        for (TextField field : List.of(tagsField, filterIncludeField, filterExcludeField)) attachTagCompletion(field);
+    }
+
+    /** Suggests tags seen in earlier results for the term after the last comma. */
+    private void attachTagCompletion(TextField field) {
+        ContextMenu suggestions = new ContextMenu();
+        field.textProperty().addListener((obs, oldText, text) -> {
+            if (!field.isFocused()) return;
+            int comma = text.lastIndexOf(',');
+            String head = text.substring(0, comma + 1);
+            String prefix = text.substring(comma + 1).stripLeading();
+            List<String> names = prefix.length() < 2 ? List.of() : seenTags.complete(prefix, 8);
+            if (names.isEmpty() || names.size() == 1 && names.get(0).equalsIgnoreCase(prefix)) {
+                suggestions.hide();
+                return;
+            }
+            List<MenuItem> items = new ArrayList<>();
+            for (String name : names) {
+                MenuItem item = new MenuItem(name);
+                item.setOnAction(e -> {
+                    field.setText(head.isEmpty() ? name : head + " " + name);
+                    field.positionCaret(field.getText().length());
+                });
+                items.add(item);
+            }
+            suggestions.getItems().setAll(items);
+            if (!suggestions.isShowing()) suggestions.show(field, Side.BOTTOM, 0, 0);
+        });
+        field.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (!focused) suggestions.hide();
+        });
+    }
+
+    // --- Prefetch ---
+    private static final int PREFETCH_TOP_RESULTS = 3;
+    private static final int PREFETCH_AROUND_SELECTION = 2;
+
+    private void initPrefetch() {
+        // Hints go out once the list, the selection or the hover has settled for a moment
+        prefetchDelay.setOnFinished(e -> Prefetcher.shared().want(prefetchCandidates()));
+        sortedResults.addListener((ListChangeListener<Work>) change -> {
+            if (sortedResults.isEmpty()) hoveredWork = null;
+            prefetchDelay.playFromStart();
+        });
+        resultsListView.getSelectionModel().selectedIndexProperty().addListener((obs, old, index) -> prefetchDelay.playFromStart());
+    }
+
+    /** Work URLs the user is likely to open next, most likely first: the hovered result, the ones after the selection, the top few. */
+    private List<String> prefetchCandidates() {
+        Set<String> urls = new LinkedHashSet<>();
+        if (hoveredWork != null && sortedResults.contains(hoveredWork)) urls.add(hoveredWork.getUrl());
+        int selected = resultsListView.getSelectionModel().getSelectedIndex();
+        if (selected >= 0) {
+            for (int i = selected + 1; i <= selected + PREFETCH_AROUND_SELECTION && i < sortedResults.size(); i++) {
+                urls.add(sortedResults.get(i).getUrl());
+            }
+            if (selected > 0) urls.add(sortedResults.get(selected - 1).getUrl());
+        }
+        for (int i = 0; i < PREFETCH_TOP_RESULTS && i < sortedResults.size(); i++) urls.add(sortedResults.get(i).getUrl());
+        return List.copyOf(urls);
+    }
+
+    // --- Local result filter ---
+    private void initResultFilter() {
+        filterRatingChoice.getItems().setAll("Any Rating", "General Audiences", "Teen And Up Audiences",
+                "Mature", "Explicit", "Not Rated");
+        filterRatingChoice.setValue("Any Rating");
+        filterCompletionChoice.getItems().setAll(ResultIndex.Completion.values());
+        filterCompletionChoice.setValue(ResultIndex.Completion.ANY);
+        filterSortChoice.getItems().setAll(ResultIndex.SortKey.values());
+        filterSortChoice.setValue(ResultIndex.SortKey.NONE);
+        filterRatingChoice.valueProperty().addListener((obs, old, value) -> onResultFilterChanged());
+        filterCompletionChoice.valueProperty().addListener((obs, old, value) -> onResultFilterChanged());
+        filterSortChoice.valueProperty().addListener((obs, old, value) -> onResultFilterChanged());
+
+        // The index follows the loaded results; an active filter is re-run once per batch of new works
+        searchResults.addListener((ListChangeListener<Work>) change -> {
+            if (searchResults.isEmpty()) resultIndex.clear();
+            while (change.next()) {
+                if (!change.wasAdded()) continue;
+                resultIndex.add(change.getAddedSubList());
+                for (Work work : change.getAddedSubList()) {
+                    for (int tag : work.tagIds()) seenTags.add(TagDictionary.shared().name(tag));
+                }
+            }
+            if (!resultQuery.isAll() && !filterQueued) {
+                filterQueued = true;
+                Platform.runLater(() -> {
+                    filterQueued = false;
+                    evaluateResultFilter();
+                });
+            }
+        });
+    }
+
+    /** Re-filters the loaded results from the filter controls; nothing is fetched from AO3. */
+    @FXML
+    protected void onResultFilterChanged() {
+        int minWords = parseWordCount(filterMinWordsField.getText(), 0);
+        int maxWords = parseWordCount(filterMaxWordsField.getText(), Integer.MAX_VALUE);
+        String rating = filterRatingChoice.getValue();
+        int ratingId = rating == null ? -1 : TagDictionary.shared().lookup(TagDictionary.Kind.RATING, rating);
+        int[] ratings = rating == null || rating.equals("Any Rating") ? new int[0] : new int[] { ratingId };
+        resultQuery = new ResultIndex.Query(
+                tagTerms(filterIncludeField.getText()),
+                Arrays.stream(tagTerms(filterExcludeField.getText())).flatMapToInt(Arrays::stream).toArray(),
+                ratings, minWords, maxWords,
+                filterCompletionChoice.getValue(), filterSortChoice.getValue());
+        evaluateResultFilter();
+    }
+
+    private void evaluateResultFilter() {
+        ResultIndex.Query query = resultQuery;
+        int generation = ++filterGeneration;
+        if (query.isAll()) {
+            filteredResults.setPredicate(null);
+            sortedResults.setComparator(null);
+            filterStatusLabel.setText("");
+            return;
+        }
+        Task<ResultIndex.Result> filterTask = new Task<>() {
+            @Override
+            protected ResultIndex.Result call() {
+                return resultIndex.evaluate(query);
+            }
+        };
+        filterTask.setOnSucceeded(e -> {
+            if (generation != filterGeneration) return; // A newer filter is already on its way
+            ResultIndex.Result result = filterTask.getValue();
+            // Works that arrived after the evaluation are checked one by one until the next run
+            filteredResults.setPredicate(work -> {
+                int pos = resultIndex.positionOf(work);
+                return pos >= 0 && pos < result.size() ? result.matches(pos) : query.matches(work);
+            });
+            sortedResults.setComparator(query.sort() == ResultIndex.SortKey.NONE ? null
+                    : Comparator.comparingInt((Work work) -> result.rank(resultIndex.positionOf(work)))
+                            .thenComparingInt(resultIndex::positionOf));
+            filterStatusLabel.setText(filteredResults.size() + " of " + searchResults.size() + " loaded works");
+        });
+        filterTask.setOnFailed(e -> showError("Filtering failed: " + filterTask.getException().getMessage()));
+        Thread.ofVirtual().name("result-filter").start(filterTask);
+    }
+
+    /** Comma-separated tag names to dictionary ids; each name can match several kinds of tag. */
+    private static int[][] tagTerms(String text) {
+        return Arrays.stream(text.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(name -> TagDictionary.shared().findAll(name))
+                .toArray(int[][]::new);
+    }
+
+    private static int parseWordCount(String text, int fallback) {
+        String digits = text == null ? "" : text.replaceAll("[^0-9]", "");
+        if (digits.isEmpty()) return fallback;
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return fallback; // More digits than an int holds
+        }
+    }
+
+
+    private void loadAndShowStory(Work work) {
+        // A prefetched work is already extracted; otherwise stream the full work page, keeping only
+        // #workskin, split into chapters as they arrive
+        CompletableFuture<StoryExtractor.Extracted> prefetched = Prefetcher.shared().claim(work.getUrl());
+        CompletableFuture<StoryExtractor.Extracted> fetch = prefetched != null ? prefetched : WorkFetcher.get().fetch(work.getUrl());
+
+        Alert loadingAlert = new Alert(Alert.AlertType.INFORMATION);
+        loadingAlert.setTitle("Loading Story");
+        loadingAlert.setHeaderText("Please wait, fetching story content...");
+        loadingAlert.getDialogPane().lookupButton(ButtonType.OK).setVisible(false);
+        if (!fetch.isDone()) loadingAlert.show();
+
+        FxFutures.onFxThread(fetch,
+                extracted -> {
+                    loadingAlert.close();
+                    launchReadingWindow(work, extracted.story());
+                },
+                e -> {
+                    loadingAlert.close();
+                    showError("Failed to load story content: " + e.getMessage());
+                });
+    }
+
+    private void loadStoryFromLibrary(LibraryEntry entry) {
+        // Stored works are opened lazily: only the chapters the reader shows get decompressed
+        FxFutures.onFxThread(library.open(entry),
+                content -> launchReadingWindow(entry, content),
+                e -> showError("Could not read story file: " + e.getMessage()));
+    }
+
+    private void deleteFromLibrary(LibraryEntry entry) {
+        if (entry == null || libraryCatalog == null) return;
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Delete '" + entry.title() + "' from your offline library?");
+        confirm.setHeaderText(null);
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
+        // The list updates through the catalog listener once the delete has run
+        FxFutures.onFxThread(library.delete(entry),
+                done -> { },
+                e -> showError("Could not delete story: " + e.getMessage()));
+    }
+
+    private void launchReadingWindow(Work work, StoryContent content) {
+        try {
+            ReaderWindows.shared().open(work, content);
+        } catch (IOException e) {
+            e.printStackTrace();
+            showError("Could not open the reading window: " + e.getMessage());
+        }
+    }
+
+    private void launchReadingWindow(LibraryEntry entry, StoryContent content) {
+        try {
+            ReaderWindows.shared().open(entry, content);
+        } catch (IOException e) {
+            e.printStackTrace();
+            showError("Could not open the reading window: " + e.getMessage());
+        }
+    }
+
+    @FXML
+    protected void onRefreshLibraryClick() {
+        reconcileLibrary();
+    }
+
+    /** Looks for new chapters of every saved work; a second click stops the check. */
+    @FXML
+    protected void onCheckUpdatesClick() {
+        if (libraryCatalog == null) return;
+        if (updateChecker != null && updateChecker.runningProperty().get()) {
+            updateChecker.cancel();
+            return;
+        }
+
+        UpdateChecker checker = new UpdateChecker(library, UpdateChecker.DEFAULT_REQUESTS_PER_SECOND);
+        updateChecker = checker;
+        updateProgressBar.progressProperty().bind(checker.progressProperty());
+        updateStatusLabel.textProperty().bind(checker.statusProperty());
+        updateProgressBox.visibleProperty().bind(checker.runningProperty());
+        updateProgressBox.managedProperty().bind(checker.runningProperty());
+        checkUpdatesButton.textProperty().bind(Bindings.when(checker.runningProperty())
+                .then("Stop Checking").otherwise("Check for Updates"));
+        checker.runningProperty().addListener((obs, wasRunning, isRunning) -> {
+            if (!isRunning) showUpdateSummary(checker.results());
+        });
+        checker.start();
+    }
+
+    /** Exports one saved work to a file of the user's choosing. */
+    private void exportFromLibrary(LibraryEntry entry, WorkExporter exporter) {
+        if (entry == null || libraryCatalog == null) return;
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export '" + entry.title() + "'");
+        chooser.setInitialFileName(LibraryExport.fileNameFor(entry, exporter));
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(exporter.description(), "*" + exporter.extension()));
+        File file = chooser.showSaveDialog(libraryListView.getScene().getWindow());
+        if (file == null) return;
+
+        LibraryExport export = new LibraryExport(libraryCatalog, exporter, file.toPath().getParent());
+        FxFutures.onFxThread(LibraryIO.shared().read(() -> {
+                    export.exportWork(entry, file.toPath());
+                    return null;
+                }),
+                done -> showInfo("Exported '" + entry.title() + "' to " + file.getName() + "."),
+                e -> showError("Could not export story: " + e.getMessage()));
+    }
+
+    /** Exports the whole library to a folder; pressing the button again while it runs cancels the rest. */
+    @FXML
+    protected void onExportLibraryClick() {
+        if (libraryCatalog == null) return;
+        if (exportTask != null && exportTask.isRunning()) {
+            exportTask.cancel();
+            return;
+        }
+
+        List<WorkExporter> exporters = WorkExporter.all();
+        ChoiceDialog<String> formatDialog = new ChoiceDialog<>(exporters.get(0).description(),
+                exporters.stream().map(WorkExporter::description).toList());
+        formatDialog.setTitle("Export Library");
+        formatDialog.setHeaderText("Export every saved work as:");
+        String format = formatDialog.showAndWait().orElse(null);
+        if (format == null) return;
+        WorkExporter exporter = exporters.stream().filter(x -> x.description().equals(format)).findFirst().orElseThrow();
+
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Export Library To");
+        File folder = chooser.showDialog(libraryListView.getScene().getWindow());
+        if (folder == null) return;
+
+        List<LibraryEntry> entries = libraryCatalog.entries();
+        LibraryExport export = new LibraryExport(libraryCatalog, exporter, folder.toPath());
+        Task<LibraryExport.Result> task = new Task<>() {
+            @Override
+            protected LibraryExport.Result call() throws Exception {
+                updateMessage("Exporting " + entries.size() + " works...");
+                return export.exportAll(entries, done -> {
+                    updateProgress(done, entries.size());
+                    updateMessage("Exported " + done + " of " + entries.size() + " works");
+                }, this::isCancelled);
+            }
+        };
+        exportTask = task;
+        updateProgressBar.progressProperty().bind(task.progressProperty());
+        updateStatusLabel.textProperty().bind(task.messageProperty());
+        updateProgressBox.visibleProperty().bind(task.runningProperty());
+        updateProgressBox.managedProperty().bind(task.runningProperty());
+        exportLibraryButton.textProperty().bind(Bindings.when(task.runningProperty())
+                .then("Stop Export").otherwise("Export Library..."));
+        task.setOnSucceeded(e -> {
+            LibraryExport.Result result = task.getValue();
+            String summary = "Exported " + result.exported() + " works to " + folder + ".";
+            if (!result.failures().isEmpty()) summary += "\n\nCould not export:\n" + String.join("\n", result.failures());
+            showInfo("Export Finished", summary);
+        });
+        task.setOnFailed(e -> showError("Export failed: " + task.getException().getMessage()));
+        Thread.ofVirtual().name("library-export").start(task);
+    }
+
+    private void showUpdateSummary(List<UpdateChecker.Result> results) {
+        StringJoiner updated = new StringJoiner("\n");
+        int failed = 0;
+        for (UpdateChecker.Result result : results) {
+            switch (result.outcome()) {
+                case UPDATED -> updated.add(result.entry().title() + " (+" + result.newChapters() + " chapters)");
+                case EDITED -> updated.add(result.entry().title() + " (edited, no new chapters)");
+                case FAILED -> failed++;
+                default -> { }
+            }
+        }
+        String summary = updated.length() == 0 ? "All " + results.size() + " checked works are up to date." : updated.toString();
+        if (failed > 0) summary += "\n\n" + failed + " works could not be checked.";
+        showInfo("Update Check Finished", summary);
+    }
+
+    private void populateLibraryListView() {
+        if (libraryCatalog == null) return;
+        libraryListView.getItems().setAll(libraryCatalog.entries());
+    }
+
+    /** Full-text search over the saved works; an empty query shows the whole library again. */
+    @FXML
+    protected void onLibrarySearch() {
+        String query = librarySearchField.getText().trim();
+        if (query.isEmpty() || fullTextIndex == null) {
+            librarySnippets.clear();
+            populateLibraryListView();
+            return;
+        }
+        FxFutures.onFxThread(library.search(query, 50), hits -> {
+            librarySnippets.clear();
+            List<LibraryEntry> matches = new ArrayList<>();
+            for (FullTextIndex.Hit hit : hits) {
+                LibraryEntry entry = libraryCatalog.get(hit.fileName());
+                if (entry == null) continue;
+                matches.add(entry);
+                librarySnippets.put(entry.fileName(), hit.snippet());
+            }
+            libraryListView.getItems().setAll(matches);
+        }, e -> showError("Library search failed: " + e.getMessage()));
+    }
+
+    /** Catalog changes can come from any thread; coalesce them into one list update on the FX thread. */
+    private void scheduleLibraryRefresh() {
+        if (libraryRefreshQueued.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                libraryRefreshQueued.set(false);
+                // Leave search results alone; they are refreshed when the search runs again
+                if (librarySearchField.getText().isBlank()) populateLibraryListView();
+            });
+        }
+    }
+
+    /** Picks up files added or removed outside the app and indexes anything new, without blocking the UI. */
+    private void reconcileLibrary() {
+        if (library == null) return;
+        FxFutures.onFxThread(library.reconcile(),
+                done -> { },
+                e -> showError("Could not read library directory: " + e.getMessage()));
+    }
+
+    // --- Helper & Utility Methods ---
+    private String buildSearchQuery() {
+        return new SearchQuery()
+                .any(anyField.getText())
+                .title(titleField.getText())
+                .author(authorField.getText())
+                .tags(tagsField.getText())
+                .build();
+    }
+    private void showInfo(String header, String content) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Information");
+        alert.setHeaderText(header);
+        alert.setContentText(content);
+        alert.showAndWait();
+    }
+    private void showInfo(String message) { showInfo(null, message); }
+    private void showError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
+    public void showCredits() {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Credits");
+        alert.setHeaderText("AO3 Reader Application");
+        alert.setContentText("Developed by: [Your Name/Handle Here]\n" +
+                "Using JavaFX and Jsoup.\n\n" +
+                "Thanks for using the app!");
+        alert.showAndWait();
+    }
+}
\ No newline at end of file
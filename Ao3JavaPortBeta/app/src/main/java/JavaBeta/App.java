@@ -0,0 +1,85 @@
+package JavaBeta; // Make sure this matches your package
+
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.net.URL;
+
+public class App extends Application {
+
+    // Set for the cds profile's training run: quit once started, so the JVM writes the class archive
+    private static final boolean EXIT_AFTER_STARTUP = Boolean.getBoolean("ao3.exitAfterStartup");
+
+    @Override
+    public void start(Stage stage) throws IOException {
+        URL fxmlLocation = getClass().getResource("/JavaBeta/main-view.fxml");
+        if (fxmlLocation == null) {
+            System.err.println("CRITICAL ERROR: Cannot find FXML file. Path: /JavaBeta/main-view.fxml");
+            return;
+        }
+
+        FXMLLoader loader = new FXMLLoader(fxmlLocation);
+        Parent root = loader.load();
+        Scene scene = new Scene(root, 800, 600);
+
+        // --- APPLY STYLESHEET ---
+        // Choose the correct path based on Option A or B from Step 1
+        URL stylesheetUrl = getClass().getResource("/JavaBeta/dark-theme.css"); // Or "/JavaBeta/styles.css"
+        if (stylesheetUrl != null) {
+            scene.getStylesheets().add(stylesheetUrl.toExternalForm());
+        } else {
+            System.err.println("Warning: Could not find the stylesheet.");
+        }
+        // --- END APPLY STYLESHEET ---
+
+        // Ctrl+Shift+M writes the fetch/parse/render/disk timings so far (see Metrics)
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.M, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN),
+                App::dumpMetrics);
+
+        stage.setTitle("Ao3JavaFXPortBeta");
+        stage.setScene(scene);
+        stage.show();
+
+        // The window is up before the library, the network or the reader are touched
+        Startup.awaitFirstFrame(scene);
+        if (EXIT_AFTER_STARTUP) {
+            Startup.whenInteractive(() -> {
+                ReaderWindows.shared().prewarm(); // So WebKit's classes make it into the archive too
+                Platform.exit();
+            });
+        }
+        Ao3Controller controller = loader.getController();
+        Platform.runLater(controller::startBackgroundWork);
+    }
+
+    @Override
+    public void stop() {
+        try {
+            ProgressStore.shared().flush(); // Queued ahead of the shutdown below, so the last position is written
+        } catch (IOException e) {
+            System.err.println("Warning: Could not save reading progress: " + e.getMessage());
+        }
+        LibraryIO.shared().shutdown(); // A download queued just before quitting still gets written
+        if (System.getProperty("ao3.metricsFile") != null) dumpMetrics();
+    }
+
+    private static void dumpMetrics() {
+        try {
+            Metrics.shared().dump(Metrics.defaultDumpFile());
+        } catch (IOException e) {
+            System.err.println("Warning: Could not write metrics: " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package JavaBeta;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.net.spi.URLStreamHandlerProvider;
+import java.nio.file.Files;
+
+/**
+ * Serves {@code ao3asset:} URLs from the library's {@link AssetStore}, so the images in a saved work
+ * load in the reader's WebView without the network. The JDK finds it through
+ * {@code META-INF/services}, the first time such a URL is opened.
+ */
+public class AssetUrlProvider extends URLStreamHandlerProvider {
+
+    @Override
+    public URLStreamHandler createURLStreamHandler(String protocol) {
+        return AssetStore.URL_SCHEME.equals(protocol) ? new Handler() : null;
+    }
+
+    private static final class Handler extends URLStreamHandler {
+        @Override
+        protected URLConnection openConnection(URL url) {
+            return new Connection(url);
+        }
+    }
+
+    private static final class Connection extends URLConnection {
+        private AssetStore.Stored stored;
+
+        Connection(URL url) {
+            super(url);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (connected) return;
+            stored = Library.shared().catalog().assets().resolve(url.toString());
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            return Files.newInputStream(stored.file());
+        }
+
+        @Override
+        public String getContentType() {
+            try {
+                connect();
+                return stored.contentType();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            try {
+                connect();
+                return Files.size(stored.file());
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+    }
+}
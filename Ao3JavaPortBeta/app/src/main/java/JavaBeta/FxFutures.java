@@ -0,0 +1,25 @@
+package JavaBeta;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/** Brings the results of the core library's background work back to the JavaFX thread. */
+public final class FxFutures {
+
+    private FxFutures() {
+    }
+
+    /** Hands the outcome of {@code future} to one of the callbacks on the JavaFX thread. */
+    public static <T> void onFxThread(CompletableFuture<T> future, Consumer<T> done, Consumer<IOException> failed) {
+        future.whenComplete((value, error) -> Platform.runLater(() -> {
+            if (error == null) {
+                done.accept(value);
+            } else {
+                failed.accept(LibraryIO.failureOf(error));
+            }
+        }));
+    }
+}
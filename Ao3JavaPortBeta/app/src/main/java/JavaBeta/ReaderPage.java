@@ -0,0 +1,170 @@
+package JavaBeta;
+
+/**
+ * The HTML document a reader window shows: styles, the first chapter slots and the script that
+ * streams in the rest of the work.
+ * <p>
+ * Later chapters are appended by the script as the reader scrolls towards them, and chapters far
+ * outside the viewport are collapsed to empty boxes of the same height so the DOM stays small.
+ * A work reopened mid-way starts with empty collapsed slots for the chapters before the saved one,
+ * which the same mechanism fills in if the reader scrolls back up. The script talks to
+ * {@link ReadingController} through the {@code window.reader} bridge.
+ */
+public final class ReaderPage {
+
+    // Placeholders: font size, line height, theme class and the first chapter slots
+    private static final String TEMPLATE = """
+        <!DOCTYPE html>
+        <html style="--reader-font-size: %dpx; --reader-line-height: %s;">
+        <head>
+            <meta charset="UTF-8">
+            <style>
+                body { margin: 20px; font-family: sans-serif; font-size: var(--reader-font-size); }
+                .default { background-color: white; color: black; }
+                .sepia { background-color: #fbf0d9; color: #5b4636; }
+                .dark { background-color: #1e1e1e; color: #dcdcdc; }
+                /* Basic AO3 styles */
+                p { margin-bottom: 1em; line-height: var(--reader-line-height); }
+                h1, h2, h3, h4, h5, h6 { margin-top: 1.5em; margin-bottom: 0.5em; }
+                hr { border: none; border-top: 1px solid #ccc; margin: 2em 0; }
+                em { font-style: italic; }
+                strong { font-weight: bold; }
+                blockquote { margin-left: 2em; padding-left: 1em; border-left: 3px solid #ccc; }
+                a { color: #990000; text-decoration: none; } /* Basic link styling */
+                a:hover { text-decoration: underline; }
+            </style>
+        </head>
+        <body class="%s">
+            <div id="chapters">%s</div>
+            <script>
+                var container = document.getElementById('chapters');
+                var KEEP_SCREENS = 3;
+                var requesting = false, complete = false, checkQueued = false;
+                var reportedIndex = -1, reportedFraction = -1;
+
+                function slot(index) {
+                    return container.querySelector('section[data-index="' + index + '"]');
+                }
+                function appendChapter(index, html) {
+                    var s = document.createElement('section');
+                    s.className = 'chapter-slot';
+                    s.setAttribute('data-index', index);
+                    s.innerHTML = html;
+                    container.appendChild(s);
+                    requesting = false;
+                    scheduleCheck();
+                }
+                function allChaptersLoaded() {
+                    complete = true;
+                    requesting = false;
+                }
+                function fillChapter(index, html) {
+                    var s = slot(index);
+                    if (!s || !s.hasAttribute('data-collapsed')) return;
+                    var above = s.getBoundingClientRect().bottom <= 0;
+                    var before = s.offsetHeight;
+                    s.innerHTML = html;
+                    s.style.height = '';
+                    s.removeAttribute('data-collapsed');
+                    if (above) window.scrollBy(0, s.offsetHeight - before);
+                }
+                function collapse(s) {
+                    s.style.height = s.offsetHeight + 'px';
+                    s.innerHTML = '';
+                    s.setAttribute('data-collapsed', 'true');
+                }
+                function check() {
+                    checkQueued = false;
+                    if (!window.reader) return;
+                    var view = window.innerHeight;
+                    var slots = container.children;
+                    for (var i = 0; i < slots.length; i++) {
+                        var s = slots[i], r = s.getBoundingClientRect();
+                        var far = r.bottom < -KEEP_SCREENS * view || r.top > (KEEP_SCREENS + 1) * view;
+                        var state = s.getAttribute('data-collapsed');
+                        if (far && state === null) {
+                            collapse(s);
+                        } else if (!far && state === 'true') {
+                            s.setAttribute('data-collapsed', 'requested');
+                            reader.requestChapter(parseInt(s.getAttribute('data-index')));
+                        }
+                    }
+                    if (!complete && !requesting && container.getBoundingClientRect().bottom < 2 * view) {
+                        requesting = true;
+                        reader.requestMore();
+                    }
+                    reportPosition();
+                }
+                // The first chapter still on screen, and how far its top has scrolled past the window's
+                function reportPosition() {
+                    var slots = container.children;
+                    for (var i = 0; i < slots.length; i++) {
+                        var s = slots[i];
+                        if (s.hasAttribute('data-collapsed')) continue;
+                        var r = s.getBoundingClientRect();
+                        if (r.bottom <= 0) continue;
+                        var index = parseInt(s.getAttribute('data-index'));
+                        var fraction = r.height > 0 ? Math.round(Math.max(0, -r.top) / r.height * 10000) / 10000 : 0;
+                        if (index !== reportedIndex || fraction !== reportedFraction) {
+                            reportedIndex = index;
+                            reportedFraction = fraction;
+                            reader.positionChanged(index, fraction);
+                        }
+                        return;
+                    }
+                }
+                function restorePosition(index, fraction) {
+                    var s = slot(index);
+                    if (!s) return;
+                    var r = s.getBoundingClientRect();
+                    window.scrollTo(0, r.top + window.pageYOffset + fraction * r.height);
+                }
+                // Theme, font size and line height change in place: no reload, scroll position kept
+                function applyReaderStyle(theme, fontSize, lineHeight) {
+                    var root = document.documentElement.style;
+                    var oldScale = parseFloat(root.getPropertyValue('--reader-font-size')) *
+                            parseFloat(root.getPropertyValue('--reader-line-height'));
+                    document.body.className = theme;
+                    root.setProperty('--reader-font-size', fontSize + 'px');
+                    root.setProperty('--reader-line-height', lineHeight);
+                    // Collapsed chapters keep their old height; rescale it so the scrollbar stays close
+                    var ratio = (fontSize * lineHeight) / oldScale;
+                    var slots = container.children;
+                    for (var i = 0; i < slots.length; i++) {
+                        if (slots[i].hasAttribute('data-collapsed')) {
+                            slots[i].style.height = Math.round(slots[i].offsetHeight * ratio) + 'px';
+                        }
+                    }
+                    scheduleCheck();
+                }
+                function scheduleCheck() {
+                    if (checkQueued) return;
+                    checkQueued = true;
+                    setTimeout(check, 50);
+                }
+                window.addEventListener('scroll', scheduleCheck);
+                window.addEventListener('resize', scheduleCheck);
+            </script>
+        </body>
+        </html>
+        """;
+
+    private ReaderPage() {
+    }
+
+    /**
+     * The page opened at chapter {@code first} (0 for the start), whose markup is {@code chapterHtml}.
+     * Only that chapter goes through {@code String.format}, however long the work is.
+     */
+    public static String html(int fontSize, double lineHeight, String themeClass, int first, String chapterHtml) {
+        long started = System.nanoTime();
+        StringBuilder slots = new StringBuilder(chapterHtml.length() + 64 * first + 64);
+        for (int i = 0; i < first; i++) {
+            slots.append("<section class=\"chapter-slot\" data-index=\"").append(i).append("\" data-collapsed=\"true\"></section>");
+        }
+        slots.append("<section class=\"chapter-slot\" data-index=\"").append(first).append("\">").append(chapterHtml).append("</section>");
+        String page = String.format(TEMPLATE, fontSize, String.valueOf(lineHeight), themeClass, slots);
+        Metrics.shared().record(Metrics.RENDER_TEMPLATE, System.nanoTime() - started, page.length());
+        return page;
+    }
+}
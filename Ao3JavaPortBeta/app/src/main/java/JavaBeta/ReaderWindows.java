@@ -0,0 +1,164 @@
+package JavaBeta;
+
+import javafx.animation.PauseTransition;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Hands out reader windows from a small pool instead of building a new one per story.
+ * <p>
+ * Every reader holds a WebView, i.e. a whole WebKit instance, and loading {@code ReadingView.fxml}
+ * is not free either. So at most {@link #MAX_READERS} readers ever exist. A closed reader is blanked
+ * and kept for the next story; when all of them are open, the least recently used window is reused
+ * for the new story. The stylesheet is resolved once, and one reader is built ahead of time shortly
+ * after start-up so even the first story opens without the FXML load. Used from the JavaFX thread only,
+ * except {@link #preloadClasses()}.
+ */
+public final class ReaderWindows {
+
+    private static final int MAX_READERS = 4;
+    private static final Duration PREWARM_DELAY = Duration.seconds(2);
+    private static final URL VIEW = ReaderWindows.class.getResource("/JavaBeta/ReadingView.fxml");
+    private static final URL STYLESHEET = ReaderWindows.class.getResource("/JavaBeta/styles.css");
+    // The bulk of a reader's first-use cost is loading WebKit's classes, which needn't happen on the FX thread
+    private static final List<String> READER_CLASSES = List.of(
+            "javafx.scene.web.WebView", "javafx.scene.web.WebEngine", "com.sun.webkit.WebPage",
+            "netscape.javascript.JSObject", "JavaBeta.ReadingController", "JavaBeta.ReaderPage");
+
+    private static ReaderWindows shared;
+
+    /** One pooled window and the controller of its view. */
+    private static final class Reader {
+        final Stage stage;
+        final ReadingController controller;
+        String storyKey; // Identifies the story on display; null while idle
+
+        Reader(Stage stage, ReadingController controller) {
+            this.stage = stage;
+            this.controller = controller;
+        }
+    }
+
+    private final Deque<Reader> idle = new ArrayDeque<>();
+    private final List<Reader> open = new ArrayList<>(); // Least recently used first
+    private final String stylesheet = STYLESHEET == null ? null : STYLESHEET.toExternalForm();
+
+    private ReaderWindows() {
+    }
+
+    public static ReaderWindows shared() {
+        if (shared == null) shared = new ReaderWindows();
+        return shared;
+    }
+
+    /**
+     * Loads (without initializing) the classes a reader needs, from any thread. Static initializers
+     * still run on the JavaFX thread when the first reader is built.
+     */
+    public static void preloadClasses() {
+        ClassLoader loader = ReaderWindows.class.getClassLoader();
+        for (String name : READER_CLASSES) {
+            try {
+                Class.forName(name, false, loader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                System.err.println("Warning: Could not preload " + name + ": " + e);
+            }
+        }
+    }
+
+    /** Builds one idle reader a moment from now, once the main window has had its turn. */
+    public void prewarmSoon() {
+        PauseTransition delay = new PauseTransition(PREWARM_DELAY);
+        delay.setOnFinished(e -> prewarm());
+        delay.play();
+    }
+
+    /** Builds one idle reader now, unless one is already waiting. */
+    public void prewarm() {
+        if (!idle.isEmpty() || open.size() >= MAX_READERS) return;
+        try {
+            idle.push(create());
+        } catch (IOException ex) {
+            System.err.println("Warning: Could not prepare a reader window: " + ex.getMessage());
+        }
+    }
+
+    /** Shows a work fetched from AO3. */
+    public void open(Work work, StoryContent content) throws IOException {
+        show(work.getUrl(), work.getTitle(), controller -> controller.loadStory(work, content));
+    }
+
+    /** Shows a work from the offline library; it shares a window and a reading position with its online copy. */
+    public void open(LibraryEntry entry, StoryContent content) throws IOException {
+        String key = ProgressStore.keyFor(entry);
+        show(key, entry.title(), controller -> controller.loadStory(entry.title(), content, true, key));
+    }
+
+    private void show(String storyKey, String title, Consumer<ReadingController> load) throws IOException {
+        // The same story again just comes to the front
+        for (Reader reader : open) {
+            if (Objects.equals(reader.storyKey, storyKey)) {
+                touch(reader);
+                reader.stage.toFront();
+                return;
+            }
+        }
+
+        Reader reader;
+        if (!idle.isEmpty()) {
+            reader = idle.pop();
+        } else if (open.size() < MAX_READERS) {
+            reader = create();
+        } else {
+            reader = open.get(0); // Every reader is in use: take over the one looked at least recently
+        }
+
+        reader.storyKey = storyKey;
+        touch(reader);
+        reader.stage.setTitle(title);
+        load.accept(reader.controller);
+        reader.stage.show();
+        reader.stage.toFront();
+    }
+
+    private Reader create() throws IOException {
+        FXMLLoader loader = new FXMLLoader(VIEW);
+        Parent root = loader.load();
+        Scene scene = new Scene(root);
+        if (stylesheet != null) scene.getStylesheets().add(stylesheet);
+        Stage stage = new Stage();
+        stage.setScene(scene);
+
+        Reader reader = new Reader(stage, loader.getController());
+        stage.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (focused && open.contains(reader)) touch(reader);
+        });
+        stage.setOnHidden(e -> release(reader));
+        return reader;
+    }
+
+    /** A closed window drops its story (and the page's DOM) and waits for the next one. */
+    private void release(Reader reader) {
+        open.remove(reader);
+        reader.storyKey = null;
+        reader.controller.unload();
+        idle.push(reader);
+    }
+
+    private void touch(Reader reader) {
+        open.remove(reader);
+        open.add(reader);
+    }
+}
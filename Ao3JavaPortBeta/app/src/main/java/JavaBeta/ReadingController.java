@@ -0,0 +1,333 @@
+package JavaBeta;
+
+import javafx.application.Platform;
+import javafx.concurrent.Worker;
+import javafx.fxml.FXML;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SpinnerValueFactory;
+import javafx.scene.web.WebView; // Import WebView
+import javafx.stage.Stage;
+import netscape.javascript.JSObject;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+public class ReadingController {
+
+    @FXML private ChoiceBox<String> themeChoiceBox;
+    @FXML private Spinner<Integer> fontSizeSpinner;
+    @FXML private Spinner<Double> lineHeightSpinner;
+    @FXML private WebView storyWebView; // Correctly declared as WebView
+    @FXML private Button downloadButton;
+
+    private String storyTitle;
+    private String storyAuthor;
+    private String storyUrl;
+    private StoryContent story;     // The scraped story, split into chapters
+    private int nextChapter = 0;    // First chapter not yet handed to the WebView
+    private boolean isOfflineStory = false;
+    private String themeClass = "default";
+    private String progressKey;     // Where the reading position is kept in the ProgressStore; null if not tracked
+    private int restoreChapter = 0; // Saved position to scroll to once the page has loaded
+    private double restoreFraction = 0;
+    private ProgressStore progress;     // Null if the progress file couldn't be read; positions then aren't kept
+    private Ao3Events.ReaderRender pendingRender; // Page handed to the WebView, until its first layout
+    private long renderStarted;
+
+    // WebEngine only keeps a weak reference to bridge objects, so hold on to it here
+    private final ChapterBridge chapterBridge = new ChapterBridge();
+
+    @FXML
+    public void initialize() {
+        themeChoiceBox.getItems().addAll("Default", "Sepia", "Dark Mode");
+        themeChoiceBox.setValue("Default");
+        themeChoiceBox.getSelectionModel().selectedItemProperty().addListener(
+                (obs, oldTheme, newTheme) -> updateTheme(newTheme)
+        );
+        fontSizeSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(10, 32, 16));
+        fontSizeSpinner.valueProperty().addListener((obs, oldSize, newSize) -> applyReaderStyle());
+        lineHeightSpinner.setValueFactory(new SpinnerValueFactory.DoubleSpinnerValueFactory(1.0, 2.5, 1.5, 0.1));
+        lineHeightSpinner.valueProperty().addListener((obs, oldHeight, newHeight) -> applyReaderStyle());
+        downloadButton.setDisable(true);
+        progress = openProgressStore();
+        // Basic WebView setup if needed (e.g., disable context menu)
+        storyWebView.setContextMenuEnabled(false);
+
+        // Once the shell document (with chapter 1) is ready, let its script ask for more chapters
+        storyWebView.getEngine().getLoadWorker().stateProperty().addListener((obs, oldState, state) -> {
+            if (state == Worker.State.SUCCEEDED && story != null) {
+                JSObject window = (JSObject) storyWebView.getEngine().executeScript("window");
+                window.setMember("reader", chapterBridge);
+                if (restoreChapter > 0 || restoreFraction > 0) window.call("restorePosition", restoreChapter, restoreFraction);
+                window.call("scheduleCheck");
+                finishRender();
+            }
+        });
+    }
+
+    // Load method for ONLINE stories (receives Work object)
+    public void loadStory(Work work, StoryContent content) {
+        this.storyTitle = work.getTitle();
+        this.storyAuthor = work.getAuthor();
+        this.storyUrl = work.getUrl();
+        this.story = content;
+        this.isOfflineStory = false;
+        this.progressKey = ProgressStore.keyFor(work);
+
+        Stage stage = getStage();
+        if (stage != null) stage.setTitle(storyTitle);
+
+        updateWebViewContent(); // Load content with the current theme
+        downloadButton.setDisable(false); // Enable download
+    }
+
+    // Load method for OFFLINE stories (receives title, file content, flag)
+    public void loadStory(String title, String fileContent, boolean isOffline) {
+        loadStory(title, storyFromFile(fileContent), isOffline);
+    }
+
+    // Load method for works from the library store, whose chapters are decompressed as they are shown
+    public void loadStory(String title, StoryContent content, boolean isOffline) {
+        loadStory(title, content, isOffline, "library:" + title);
+    }
+
+    // As above, remembering the reading position under progressKey (see ProgressStore.keyFor)
+    public void loadStory(String title, StoryContent content, boolean isOffline, String progressKey) {
+        this.storyTitle = title;
+        this.storyAuthor = "Unknown"; // Author info not stored offline
+        this.story = content;
+        this.isOfflineStory = isOffline;
+        this.progressKey = progressKey;
+
+        Stage stage = getStage();
+        if (stage != null) stage.setTitle(title);
+
+        updateWebViewContent(); // Load content with the current theme
+        downloadButton.setDisable(true); // Disable download for offline stories
+    }
+
+    /** Forgets the story and empties the page, so a pooled window holds no DOM while it waits. */
+    public void unload() {
+        if (progressKey != null && progress != null) progress.flush(); // Don't wait for the debounce
+        progressKey = null;
+        pendingRender = null;
+        story = null;
+        storyTitle = null;
+        storyAuthor = null;
+        storyUrl = null;
+        nextChapter = 0;
+        downloadButton.setDisable(true);
+        storyWebView.getEngine().loadContent("");
+    }
+
+    /** Content of a legacy .html/.txt library file. */
+    public static StoryContent storyFromFile(String fileContent) {
+        if (fileContent == null) return StoryContent.single("Error: Could not load content.");
+        return StoryContent.fromFile(fileContent);
+    }
+
+    @FXML
+    protected void onDownloadButtonClick() {
+        if (isOfflineStory || storyTitle == null || storyAuthor == null || story == null) {
+            showError("Cannot download this story (it might be offline or not fully loaded).");
+            return;
+        }
+
+        Library library = getLibrary();
+        if (library == null) return; // Error shown in helper
+
+        // Save into the library store in the background, then index it; chapters already saved by an earlier download are reused
+        String title = storyTitle, author = storyAuthor, url = storyUrl;
+        StoryContent content = story;
+        downloadButton.setDisable(true);
+        FxFutures.onFxThread(library.save(title, author, url, content, null),
+                entry -> {
+                    if (story == content) downloadButton.setDisable(false);
+                    showInfo("Download Complete!", "Saved '" + title + "' to your offline library ("
+                            + entry.sizeBytes() / 1024 + " KB compressed).");
+                },
+                e -> {
+                    if (story == content) downloadButton.setDisable(false);
+                    showError("Could not save file: " + e.getMessage());
+                });
+    }
+
+    private void updateTheme(String themeName) {
+        themeClass = "default"; // Default CSS class name in ReaderPage
+        if ("Sepia".equals(themeName)) {
+            themeClass = "sepia";
+        } else if ("Dark Mode".equals(themeName)) {
+            themeClass = "dark";
+        }
+        applyReaderStyle(); // Swap the body class in place instead of reloading the story
+    }
+
+    /** Pushes theme, font size and line height into the loaded page through the JavaScript bridge. */
+    private void applyReaderStyle() {
+        // Before the page has loaded there is nothing to update; the next load picks the values up
+        if (storyWebView.getEngine().getLoadWorker().getState() != Worker.State.SUCCEEDED || story == null) return;
+        JSObject window = (JSObject) storyWebView.getEngine().executeScript("window");
+        window.call("applyReaderStyle", themeClass, fontSizeSpinner.getValue(), lineHeight());
+    }
+
+    private double lineHeight() {
+        return Math.round(lineHeightSpinner.getValue() * 10) / 10.0;
+    }
+
+    /**
+     * Helper to load the first chapter into WebView as a ReaderPage; the rest streams in on scroll.
+     * A work with a saved position starts at the saved chapter rather than the first, so the page
+     * opens where the reader left off without rendering what comes before.
+     */
+    private void updateWebViewContent() {
+        if (story != null && storyWebView != null && storyWebView.getEngine() != null) {
+            ProgressStore.Position saved = progressKey == null || progress == null ? null : progress.get(progressKey);
+            int first = saved != null && saved.chapter() < story.chapterCount() ? saved.chapter() : 0;
+            restoreChapter = first;
+            restoreFraction = saved != null && saved.chapter() == first ? saved.fraction() : 0;
+            nextChapter = first + 1;
+            withChapter(first, html -> {
+                Ao3Events.ReaderRender render = new Ao3Events.ReaderRender();
+                render.begin();
+                renderStarted = System.nanoTime();
+                String page = ReaderPage.html(fontSizeSpinner.getValue(), lineHeight(), themeClass, first, html);
+                render.templateTime = System.nanoTime() - renderStarted;
+                render.title = storyTitle;
+                render.chapter = first;
+                render.bytes = page.length();
+                pendingRender = render;
+                storyWebView.getEngine().loadContent(page);
+            });
+        } else if (storyWebView != null && storyWebView.getEngine() != null){
+            storyWebView.getEngine().loadContent("<html><body>Error: No content available to display.</body></html>");
+        }
+    }
+
+    /**
+     * Times the page load up to the first layout pass after it: the point the text is on screen,
+     * rather than when the document finished loading.
+     */
+    private void finishRender() {
+        Ao3Events.ReaderRender render = pendingRender;
+        Scene scene = storyWebView.getScene();
+        if (render == null || scene == null) return;
+        pendingRender = null;
+        long started = renderStarted;
+        boolean[] counted = {false};
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            if (counted[0]) return; // Removal is still pending
+            counted[0] = true;
+            Metrics.shared().record(Metrics.RENDER_LOAD, System.nanoTime() - started, render.bytes);
+            render.commit();
+            Platform.runLater(() -> scene.removePostLayoutPulseListener(listener[0])); // Not while the pulse iterates
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+        Platform.requestNextPulse();
+    }
+
+    /** Appends the next chapter to the page, or tells the page there is nothing left. */
+    private void appendNextChapter() {
+        if (story == null) return;
+        if (nextChapter >= story.chapterCount()) {
+            ((JSObject) storyWebView.getEngine().executeScript("window")).call("allChaptersLoaded");
+            return;
+        }
+        int index = nextChapter++;
+        boolean last = nextChapter >= story.chapterCount();
+        withChapter(index, html -> {
+            JSObject window = (JSObject) storyWebView.getEngine().executeScript("window");
+            window.call("appendChapter", index, html);
+            if (last) window.call("allChaptersLoaded");
+        });
+    }
+
+    /** Restores a chapter the page collapsed after it scrolled far out of view. */
+    private void refillChapter(int index) {
+        if (story == null || index < 0 || index >= nextChapter) return;
+        withChapter(index, html -> {
+            JSObject window = (JSObject) storyWebView.getEngine().executeScript("window");
+            window.call("fillChapter", index, html);
+        });
+    }
+
+    /**
+     * Gets a chapter's markup off the JavaFX thread (a stored work decompresses it from disk) and
+     * passes it to {@code show}, unless the window has moved on to another story meanwhile.
+     */
+    private void withChapter(int index, Consumer<String> show) {
+        StoryContent shown = story;
+        FxFutures.onFxThread(LibraryIO.shared().read(() -> shown.chapter(index)),
+                html -> {
+                    if (story == shown) show.accept(html);
+                },
+                e -> showError("Could not load chapter " + (index + 1) + ": " + e.getMessage()));
+    }
+
+    /** Called from the page script; must be public for the JavaScript bridge. */
+    public class ChapterBridge {
+        public void requestMore() {
+            Platform.runLater(ReadingController.this::appendNextChapter);
+        }
+
+        public void requestChapter(int index) {
+            Platform.runLater(() -> refillChapter(index));
+        }
+
+        /** Only updates memory; the store batches the disk writes. */
+        public void positionChanged(int index, double fraction) {
+            if (story != null && progressKey != null && progress != null) {
+                progress.update(progressKey, index, fraction);
+            }
+        }
+    }
+
+    /** Helper to open the reading progress store; null if it can't be read */
+    private static ProgressStore openProgressStore() {
+        try {
+            return ProgressStore.shared();
+        } catch (IOException e) {
+            System.err.println("Warning: Could not open reading progress: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Helper to safely get the offline library */
+    private Library getLibrary() {
+        try {
+            return Library.shared();
+        } catch (IOException e) {
+            showError("Could not access library directory: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Helper to safely get the stage */
+    private Stage getStage() {
+        if (storyWebView != null && storyWebView.getScene() != null) {
+            return (Stage) storyWebView.getScene().getWindow();
+        }
+        return null;
+    }
+
+    // --- Alert Helpers ---
+    private void showInfo(String header, String content) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Information");
+        alert.setHeaderText(header);
+        alert.setContentText(content);
+        alert.showAndWait();
+    }
+
+    private void showError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
\ No newline at end of file
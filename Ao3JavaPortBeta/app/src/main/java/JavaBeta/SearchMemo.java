@@ -0,0 +1,60 @@
+package JavaBeta;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers the results of the last few searches, so going back to an earlier query (say by
+ * backspacing in a live search) shows its results at once instead of asking AO3 again.
+ * <p>
+ * Queries are compared after normalizing: case, surrounding and repeated whitespace don't matter.
+ * Least recently used entries are dropped first, and results older than {@link #MAX_AGE} are not
+ * reused, matching how long the response cache trusts a search page. Used from the JavaFX thread only.
+ */
+public final class SearchMemo {
+
+    private static final int MAX_QUERIES = 16;
+    private static final Duration MAX_AGE = Duration.ofMinutes(10);
+
+    private record Saved(SearchPager.Snapshot snapshot, Instant at) {
+    }
+
+    private final Map<String, Saved> snapshots = new LinkedHashMap<>(32, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Saved> eldest) {
+            return size() > MAX_QUERIES;
+        }
+    };
+
+    public static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /** Saves the pager's loaded pages under its query; pagers without a complete page are ignored. */
+    public void remember(SearchPager pager) {
+        SearchPager.Snapshot snapshot = pager.snapshot();
+        if (snapshot == null) return;
+        String key = normalize(snapshot.query());
+        SearchPager.Snapshot known = recall(key);
+        if (known == null || known.works().size() < snapshot.works().size()) snapshots.put(key, new Saved(snapshot, Instant.now()));
+    }
+
+    /** Saved results for {@code query}, or null if there are none or they are too old. */
+    public SearchPager.Snapshot recall(String query) {
+        String key = normalize(query);
+        Saved saved = snapshots.get(key);
+        if (saved == null) return null;
+        if (saved.at().plus(MAX_AGE).isBefore(Instant.now())) {
+            snapshots.remove(key);
+            return null;
+        }
+        return saved.snapshot();
+    }
+
+    public void clear() {
+        snapshots.clear();
+    }
+}
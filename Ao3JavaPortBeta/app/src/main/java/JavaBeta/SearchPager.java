@@ -0,0 +1,227 @@
+package JavaBeta;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Pages through the AO3 search results for one query, fetched with {@link SearchClient}.
+ * <p>
+ * The page being shown is streamed into the results list in small batches while it is parsed.
+ * The pages after it are fetched ahead in the background (never more than {@link #MAX_IN_FLIGHT}
+ * requests at once) and appended when {@link #requestNextPage()} is called, i.e. when the list is
+ * scrolled to the end. All public methods must be called on the JavaFX Application Thread.
+ * <p>
+ * {@link #snapshot()} captures the pages loaded so far; {@link #resume} shows them again without
+ * any request and carries on paging from there.
+ */
+public class SearchPager {
+
+    /** The works of the fully loaded pages of one query, and where paging stopped. */
+    public record Snapshot(String query, List<Work> works, int nextPage, int lastPage) {
+    }
+
+    private static final int BATCH_SIZE = 5;      // works per ListView update
+    private static final int PREFETCH_PAGES = 2;  // pages fetched ahead of the one being shown
+    private static final int MAX_IN_FLIGHT = 2;   // concurrent page requests
+
+    private final String query;
+    private final ObservableList<Work> results;
+    private final Consumer<Throwable> onError;
+    private final Map<Integer, PageTask> pages = new HashMap<>();
+    private final ReadOnlyBooleanWrapper loading = new ReadOnlyBooleanWrapper(false);
+
+    private int nextPage = 1;   // next page to append to the results list
+    private int lastPage = -1;  // unknown until page 1 has been parsed
+    private int inFlight = 0;
+    private PageTask livePage;  // page currently being appended, if any
+    private int committed = 0;  // works in the results list that came from fully appended pages
+    private int committedNextPage = 1; // nextPage as of the last fully appended page
+    private Snapshot resumeFrom;
+    private volatile boolean cancelled = false;
+
+    public SearchPager(String query, ObservableList<Work> results, Consumer<Throwable> onError) {
+        this.query = query;
+        this.results = results;
+        this.onError = onError;
+    }
+
+    /** A pager that starts by showing {@code snapshot}'s works and fetches only the pages after them. */
+    public static SearchPager resume(Snapshot snapshot, ObservableList<Work> results, Consumer<Throwable> onError) {
+        SearchPager pager = new SearchPager(snapshot.query(), results, onError);
+        pager.resumeFrom = snapshot;
+        pager.nextPage = snapshot.nextPage();
+        pager.lastPage = snapshot.lastPage();
+        return pager;
+    }
+
+    /** Starts streaming the first page into the results list, or shows the snapshot being resumed. */
+    public void start() {
+        if (resumeFrom != null) {
+            results.addAll(resumeFrom.works());
+            committed = resumeFrom.works().size();
+            committedNextPage = nextPage;
+            resumeFrom = null;
+            return;
+        }
+        requestNextPage();
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /** The pages appended so far, or null before the first one is complete. */
+    public Snapshot snapshot() {
+        if (committedNextPage == 1 || committed > results.size()) return null;
+        return new Snapshot(query, List.copyOf(results.subList(0, committed)), committedNextPage, lastPage);
+    }
+
+    /** Appends the next page, using the prefetched copy when it is already there. */
+    public void requestNextPage() {
+        if (cancelled || livePage != null || isExhausted()) return;
+
+        PageTask task = pages.get(nextPage);
+        if (task == null) task = startPage(nextPage);
+
+        livePage = task;
+        loading.set(true);
+        task.goLive();
+        // A prefetched page may already be done; otherwise its onSucceeded handler finishes it
+        if (task.getState() == Worker.State.SUCCEEDED) onPageFinished(task);
+    }
+
+    /** Stops all fetching; batches that are still queued are dropped. */
+    public void cancel() {
+        cancelled = true;
+        pages.values().forEach(t -> t.cancel(true));
+        pages.clear();
+        livePage = null;
+        loading.set(false);
+    }
+
+    public boolean isExhausted() {
+        return lastPage != -1 && nextPage > lastPage;
+    }
+
+    /** True while the page being appended is still downloading or parsing. */
+    public ReadOnlyBooleanProperty loadingProperty() {
+        return loading.getReadOnlyProperty();
+    }
+
+    // --- Page bookkeeping ---
+    private PageTask startPage(int page) {
+        PageTask task = new PageTask(page);
+        pages.put(page, task);
+        inFlight++;
+        task.setOnSucceeded(e -> {
+            inFlight--;
+            onPageFinished(task);
+        });
+        task.setOnFailed(e -> {
+            inFlight--;
+            onPageFailed(task);
+        });
+        task.setOnCancelled(e -> inFlight--);
+
+        Ao3Client.get().execute(task);
+        return task;
+    }
+
+    private void onPageFinished(PageTask task) {
+        if (cancelled) return;
+        if (task.page == 1) lastPage = task.getLastPage();
+        if (task == livePage) {
+            pages.remove(task.page);
+            livePage = null;
+            nextPage++;
+            int through = nextPage;
+            // The page's last batch is still queued behind this; count it once it has been added
+            Platform.runLater(() -> {
+                committed = results.size();
+                committedNextPage = through;
+            });
+            loading.set(false);
+        }
+        fillPrefetchWindow();
+    }
+
+    private void onPageFailed(PageTask task) {
+        if (cancelled) return;
+        pages.remove(task.page); // A failed prefetch is simply retried when the page is needed
+        if (task == livePage) {
+            livePage = null;
+            loading.set(false);
+            onError.accept(task.getException());
+        }
+    }
+
+    private void fillPrefetchWindow() {
+        if (lastPage == -1) return;
+        int start = livePage != null ? nextPage + 1 : nextPage;
+        for (int page = start; page < start + PREFETCH_PAGES && page <= lastPage; page++) {
+            if (inFlight >= MAX_IN_FLIGHT) return;
+            if (!pages.containsKey(page)) startPage(page);
+        }
+    }
+
+    /**
+     * Fetches and parses one result page. Parsed works are buffered until the page goes live,
+     * after which they are pushed to the results list every {@link #BATCH_SIZE} works.
+     */
+    private final class PageTask extends Task<List<Work>> {
+        private final int page;
+        private final List<Work> pending = new ArrayList<>(); // guarded by this
+        private boolean live = false;                          // guarded by this
+        private volatile int pageCount = 1;
+
+        PageTask(int page) {
+            this.page = page;
+        }
+
+        int getLastPage() {
+            return pageCount;
+        }
+
+        synchronized void goLive() {
+            live = true;
+            flush();
+        }
+
+        @Override
+        protected List<Work> call() throws Exception {
+            String url = SearchClient.searchUrl(query, page);
+            SearchClient.Page result = SearchClient.get().fetchListing(url, null, work -> {
+                synchronized (this) {
+                    pending.add(work);
+                    if (live && pending.size() >= BATCH_SIZE) flush();
+                }
+            }, this::isCancelled);
+            pageCount = result.lastPage();
+            List<Work> works = result.works();
+            synchronized (this) {
+                if (live) flush();
+            }
+            return works;
+        }
+
+        /** Hands the buffered works to the FX thread. Callers must hold the lock so batches stay in order. */
+        private void flush() {
+            if (pending.isEmpty()) return;
+            List<Work> batch = new ArrayList<>(pending);
+            pending.clear();
+            Platform.runLater(() -> {
+                if (!cancelled) results.addAll(batch);
+            });
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package JavaBeta;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Measures time-to-interactive: from JVM start to the main window's first frame, and to the point
+ * where the library is listed as well. Reported in {@link Metrics} and as an {@link Ao3Events.Startup}
+ * event, so launch modes (with and without class data sharing) can be compared. Used from the JavaFX thread only.
+ */
+final class Startup {
+
+    static final String FIRST_FRAME = "startup.firstFrame";
+    static final String INTERACTIVE = "startup.interactive";
+
+    // ProcessHandle can't always tell when the JVM started; then the clock starts when App loads
+    private static final Instant JVM_START = ProcessHandle.current().info().startInstant().orElse(null);
+    private static final long FALLBACK_START = System.nanoTime();
+
+    private static long firstFrameMillis = -1;
+    private static boolean listed = false;
+    private static boolean reported = false;
+    private static Runnable then = () -> { };
+
+    private Startup() {
+    }
+
+    /** Notes the first layout pass of {@code scene} after it was shown. */
+    static void awaitFirstFrame(Scene scene) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            if (firstFrameMillis >= 0) return; // Removal is still pending
+            firstFrameMillis = sinceStart();
+            Metrics.shared().record(FIRST_FRAME, firstFrameMillis * 1_000_000);
+            Platform.runLater(() -> scene.removePostLayoutPulseListener(listener[0])); // Not while the pulse iterates
+            reportIfInteractive();
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+        Platform.requestNextPulse();
+    }
+
+    /** The library is listed; the startup report follows once the first frame is out too. */
+    static void libraryListed() {
+        listed = true;
+        reportIfInteractive();
+    }
+
+    /** Runs {@code action} after the startup report. */
+    static void whenInteractive(Runnable action) {
+        then = action;
+    }
+
+    private static void reportIfInteractive() {
+        if (reported || !listed || firstFrameMillis < 0) return;
+        reported = true;
+        long interactive = sinceStart();
+        Metrics.shared().record(INTERACTIVE, interactive * 1_000_000);
+        Ao3Events.Startup event = new Ao3Events.Startup();
+        event.firstFrame = firstFrameMillis;
+        event.interactive = interactive;
+        event.classDataSharing = System.getProperty("java.vm.info", "").contains("sharing");
+        event.commit();
+        Platform.runLater(then); // Outside the pulse
+    }
+
+    private static long sinceStart() {
+        if (JVM_START != null) return Duration.between(JVM_START, Instant.now()).toMillis();
+        return (System.nanoTime() - FALLBACK_START) / 1_000_000;
+    }
+}
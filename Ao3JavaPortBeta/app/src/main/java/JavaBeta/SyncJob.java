@@ -0,0 +1,118 @@
+package JavaBeta;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link BulkDownload} for the sync tab: the same job, with its progress mirrored into properties.
+ * <p>
+ * Progress properties are updated on the JavaFX thread.
+ */
+public final class SyncJob {
+
+    public static final double DEFAULT_REQUESTS_PER_SECOND = BulkDownload.DEFAULT_REQUESTS_PER_SECOND;
+
+    private final BulkDownload download;
+    private final AtomicReference<BulkDownload.Progress> latest = new AtomicReference<>();
+    private final AtomicBoolean publishQueued = new AtomicBoolean();
+
+    private final ReadOnlyBooleanWrapper running = new ReadOnlyBooleanWrapper(false);
+    private final ReadOnlyStringWrapper status = new ReadOnlyStringWrapper("");
+    private final ReadOnlyIntegerWrapper total = new ReadOnlyIntegerWrapper(0);
+    private final ReadOnlyIntegerWrapper completed = new ReadOnlyIntegerWrapper(0);
+    private final ReadOnlyIntegerWrapper failed = new ReadOnlyIntegerWrapper(0);
+    private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(0);
+    private final ReadOnlyDoubleWrapper worksPerMinute = new ReadOnlyDoubleWrapper(0);
+    private final ReadOnlyStringWrapper eta = new ReadOnlyStringWrapper("");
+
+    /** Works are saved through {@code library}, like {@link BulkDownload}. */
+    public SyncJob(List<String> sources, Library library, double requestsPerSecond) {
+        this.download = new BulkDownload(sources, library, requestsPerSecond);
+        download.onProgress(this::publish);
+    }
+
+    /** Sources of a job that was interrupted before it finished, or an empty list. */
+    public static List<String> interruptedSources(LibraryCatalog catalog) {
+        return BulkDownload.interruptedSources(catalog);
+    }
+
+    /** Starts the job in the background; progress shows up in the properties. */
+    public void start() {
+        if (running.get()) return;
+        running.set(true);
+        download.start();
+    }
+
+    /** Stops after the requests in flight; the checkpoint is kept so the job can be resumed. */
+    public void cancel() {
+        download.cancel();
+    }
+
+    /** Takes effect for the next request. */
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        download.setRequestsPerSecond(requestsPerSecond);
+    }
+
+    /** Copies the latest progress to the FX properties, at most one pending update at a time. */
+    private void publish(BulkDownload.Progress update) {
+        latest.set(update);
+        if (!publishQueued.compareAndSet(false, true)) return;
+        Platform.runLater(() -> {
+            publishQueued.set(false);
+            BulkDownload.Progress p = latest.get();
+            total.set(p.total());
+            completed.set(p.completed());
+            failed.set(p.failed());
+            progress.set(p.fraction());
+            worksPerMinute.set(p.worksPerMinute());
+            eta.set(p.eta());
+            status.set(p.status());
+            running.set(p.running());
+        });
+    }
+
+    public ReadOnlyBooleanProperty runningProperty() {
+        return running.getReadOnlyProperty();
+    }
+
+    public ReadOnlyStringProperty statusProperty() {
+        return status.getReadOnlyProperty();
+    }
+
+    public ReadOnlyIntegerProperty totalProperty() {
+        return total.getReadOnlyProperty();
+    }
+
+    public ReadOnlyIntegerProperty completedProperty() {
+        return completed.getReadOnlyProperty();
+    }
+
+    public ReadOnlyIntegerProperty failedProperty() {
+        return failed.getReadOnlyProperty();
+    }
+
+    /** Fraction done, or -1 (indeterminate) while the listings are still being read. */
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }
+
+    public ReadOnlyDoubleProperty worksPerMinuteProperty() {
+        return worksPerMinute.getReadOnlyProperty();
+    }
+
+    /** Estimated time left, e.g. "12m 30s"; empty when unknown. */
+    public ReadOnlyStringProperty etaProperty() {
+        return eta.getReadOnlyProperty();
+    }
+}
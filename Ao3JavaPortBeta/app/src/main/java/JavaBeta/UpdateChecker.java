@@ -0,0 +1,226 @@
+package JavaBeta;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds saved works that have new chapters on AO3 and downloads just those chapters.
+ * <p>
+ * For each entry only the work's chapter index ({@code /works/<id>/navigate}) is fetched: a few KB
+ * listing every chapter with its posting date. If AO3 lists more chapters than the library holds,
+ * the missing ones are fetched one chapter page at a time and appended to the stored work, so the
+ * chapters already saved are neither downloaded nor rewritten. A full re-download only happens when
+ * chapters were removed, or when a one-shot gained chapters (its single stored chapter holds the
+ * whole page and can't be extended).
+ * <p>
+ * Progress properties are updated on the JavaFX thread.
+ */
+public final class UpdateChecker {
+
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 1.0;
+    private static final int WORKERS = 4;
+    private static final Pattern WORK_ID = Pattern.compile("/works/(\\d+)");
+
+    /** What the check found for one work. */
+    public enum Outcome { UP_TO_DATE, UPDATED, EDITED, SKIPPED, FAILED }
+
+    /** @param newChapters chapters downloaded; for EDITED/SKIPPED/FAILED a reason is in {@code message} */
+    public record Result(LibraryEntry entry, Outcome outcome, int newChapters, String message) {
+    }
+
+    private final Library library;
+    private final LibraryCatalog catalog;
+    private final RateLimiter limiter;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final List<Thread> workers = new ArrayList<>();
+    private final List<Result> results = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger checkedCount = new AtomicInteger();
+    private final AtomicBoolean publishQueued = new AtomicBoolean();
+    private volatile int totalCount = 0;
+
+    private final ReadOnlyBooleanWrapper running = new ReadOnlyBooleanWrapper(false);
+    private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(0);
+    private final ReadOnlyStringWrapper status = new ReadOnlyStringWrapper("");
+
+    /** Changed works are saved through {@code library}, so they queue with its other writes and get re-indexed. */
+    public UpdateChecker(Library library, double requestsPerSecond) {
+        this.library = library;
+        this.catalog = library.catalog();
+        this.limiter = new RateLimiter(requestsPerSecond);
+    }
+
+    /** Checks every library entry that has an AO3 URL, in the background. */
+    public void start() {
+        if (running.get()) return;
+        running.set(true);
+        Thread.ofVirtual().name("update-check").start(this::run);
+    }
+
+    public void cancel() {
+        cancelled.set(true);
+        synchronized (workers) {
+            for (Thread worker : workers) worker.interrupt();
+        }
+    }
+
+    /** Results so far; complete once {@link #runningProperty()} turns false. */
+    public List<Result> results() {
+        synchronized (results) {
+            return List.copyOf(results);
+        }
+    }
+
+    private void run() {
+        try {
+            ConcurrentLinkedQueue<LibraryEntry> queue = new ConcurrentLinkedQueue<>(catalog.entries());
+            totalCount = queue.size();
+            publish();
+            List<Thread> started = new ArrayList<>();
+            synchronized (workers) {
+                for (int i = 0; i < Math.min(WORKERS, queue.size()); i++) {
+                    Thread worker = Thread.ofVirtual().name("update-check-" + i).start(() -> drain(queue));
+                    started.add(worker);
+                    workers.add(worker);
+                }
+            }
+            for (Thread worker : started) worker.join();
+        } catch (InterruptedException e) {
+            // Cancelled; whatever was checked so far stands
+        } finally {
+            Platform.runLater(() -> running.set(false));
+            publish();
+        }
+    }
+
+    private void drain(ConcurrentLinkedQueue<LibraryEntry> queue) {
+        LibraryEntry entry;
+        while (!cancelled.get() && (entry = queue.poll()) != null) {
+            Result result;
+            try {
+                result = check(entry);
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (cancelled.get()) return;
+                System.err.println("Warning: Update check failed for " + entry.url() + ": " + e.getMessage());
+                result = new Result(entry, Outcome.FAILED, 0, e.getMessage());
+            }
+            results.add(result);
+            checkedCount.incrementAndGet();
+            publish();
+        }
+    }
+
+    // --- Checking ---
+    private Result check(LibraryEntry entry) throws IOException, InterruptedException {
+        Matcher id = entry.url() == null ? null : WORK_ID.matcher(entry.url());
+        if (id == null || !id.find()) return new Result(entry, Outcome.SKIPPED, 0, "No AO3 link saved");
+        String workUrl = Ao3Client.BASE_URL + "/works/" + id.group(1);
+
+        // Chapter indexes are never served from the cache without asking AO3 first; see Ao3Client.ttlFor
+        Elements chapterLinks = Ao3Client.get().fetchDocument(workUrl + "/navigate?view_adult=true", limiter)
+                .select("ol.chapter.index li");
+        if (chapterLinks.isEmpty()) return new Result(entry, Outcome.FAILED, 0, "No chapter index (restricted or deleted?)");
+        String updated = latestDate(chapterLinks);
+        int remote = chapterLinks.size();
+        int local = entry.chapters() > 0 ? entry.chapters() : storedChapterCount(entry);
+
+        if (remote == local) {
+            if (Objects.equals(updated, entry.updated())) return new Result(entry, Outcome.UP_TO_DATE, 0, null);
+            LibraryIO.await(library.markUpdated(entry, updated));
+            // A first check only learns the date; a later one means chapters were re-posted or edited
+            return entry.updated() == null
+                    ? new Result(entry, Outcome.UP_TO_DATE, 0, null)
+                    : new Result(entry, Outcome.EDITED, 0, "Changed on AO3 without new chapters");
+        }
+
+        StoryContent story;
+        if (remote > local && local >= 2 && entry.fileName().endsWith(WorkStore.EXTENSION)) {
+            story = catalog.store().open(catalog.pathOf(entry));
+            List<String> added = new ArrayList<>();
+            String afterword = story.afterword();
+            for (Element link : chapterLinks.subList(local, remote)) {
+                Document page = Ao3Client.get().fetchDocument(
+                        Ao3Client.BASE_URL + link.selectFirst("a").attr("href") + "?view_adult=true", limiter);
+                Element chapter = page.selectFirst("#chapters > div.chapter");
+                if (chapter == null) throw new IOException("No chapter content on " + link.text());
+                added.add(chapter.outerHtml());
+                Element end = page.selectFirst("#workskin > div.afterword");
+                if (end != null) afterword = end.outerHtml();
+            }
+            story = story.withChaptersAppended(added, afterword);
+        } else {
+            String fullWorkUrl = workUrl + "?view_full_work=true&view_adult=true";
+            Ao3Client.get().cache().expire(fullWorkUrl); // A copy cached before the update would be served as fresh
+            StoryExtractor.Extracted work = StoryExtractor.fetch(fullWorkUrl, limiter);
+            if (work == null) throw new IOException("No story content (restricted work?)");
+            story = work.story();
+        }
+        LibraryEntry saved = LibraryIO.await(library.update(entry, story, updated));
+        return new Result(saved, Outcome.UPDATED, Math.max(0, remote - local), null);
+    }
+
+    /** Chapter index lines end in the posting date, e.g. "3. Chapter Three (2024-01-31)". */
+    private static String latestDate(Elements chapterLinks) {
+        String latest = null;
+        for (Element item : chapterLinks) {
+            Element date = item.selectFirst("span.datetime");
+            if (date == null) continue;
+            String day = date.text().replaceAll("[()\\s]", "");
+            if (latest == null || day.compareTo(latest) > 0) latest = day;
+        }
+        return latest;
+    }
+
+    private int storedChapterCount(LibraryEntry entry) throws IOException {
+        if (!entry.fileName().endsWith(WorkStore.EXTENSION)) return 0;
+        return catalog.store().open(catalog.pathOf(entry)).chapterCount();
+    }
+
+    // --- Progress ---
+    private void publish() {
+        if (!publishQueued.compareAndSet(false, true)) return;
+        Platform.runLater(() -> {
+            publishQueued.set(false);
+            int all = totalCount;
+            int done = checkedCount.get();
+            long updated;
+            synchronized (results) {
+                updated = results.stream().filter(r -> r.outcome() == Outcome.UPDATED).count();
+            }
+            progress.set(all == 0 ? 0 : (double) done / all);
+            status.set("Checked " + done + " of " + all + " works, " + updated + " updated");
+        });
+    }
+
+    public ReadOnlyBooleanProperty runningProperty() {
+        return running.getReadOnlyProperty();
+    }
+
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }
+
+    public ReadOnlyStringProperty statusProperty() {
+        return status.getReadOnlyProperty();
+    }
+}
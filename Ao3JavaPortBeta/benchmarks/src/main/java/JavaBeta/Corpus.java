@@ -0,0 +1,94 @@
+package JavaBeta;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The saved AO3 pages the benchmarks run on, and a local stand-in for AO3 that serves them.
+ * <p>
+ * The pages in {@code /corpus} follow AO3's markup (page chrome, blurbs, work meta, {@code #workskin},
+ * comments) with generated filler text, so runs are reproducible offline. The server answers like
+ * AO3 does: gzip-compressed HTML, one page per path, the search page for any search query.
+ * Benchmarks that go through {@link Ao3Client} must call {@link #startServer()} before anything
+ * touches {@code Ao3Client}, since its base URL is read once.
+ */
+public final class Corpus {
+
+    public static final String SEARCH_PAGE = "search-results.html";
+    public static final String MULTI_CHAPTER_WORK = "work-multichapter.html";
+    public static final String ONE_SHOT_WORK = "work-oneshot.html";
+
+    /** Paths the server answers, as AO3 would link them. */
+    private static final Map<String, String> ROUTES = Map.of(
+            "/works/search", SEARCH_PAGE,
+            "/works/50000001", MULTI_CHAPTER_WORK,
+            "/works/50000002", ONE_SHOT_WORK);
+
+    private static HttpServer server;
+
+    private Corpus() {
+    }
+
+    public static byte[] read(String page) {
+        try (InputStream in = Corpus.class.getResourceAsStream("/corpus/" + page)) {
+            if (in == null) throw new IllegalArgumentException("No corpus page " + page);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** The URL of {@code page} on the local server, e.g. to pass to {@link StoryExtractor#fetch}. */
+    public static String urlOf(String page) {
+        for (Map.Entry<String, String> route : ROUTES.entrySet()) {
+            if (route.getValue().equals(page)) return Ao3Client.BASE_URL + route.getKey();
+        }
+        throw new IllegalArgumentException("No route for " + page);
+    }
+
+    /**
+     * Starts the server (once per JVM) and points the app at it: {@code ao3.baseUrl} at the server and
+     * {@code ao3.cacheDir} at a throwaway folder, so the user's own cache is neither used nor filled.
+     */
+    public static synchronized void startServer() throws IOException {
+        if (server != null) return;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        for (Map.Entry<String, String> route : ROUTES.entrySet()) {
+            byte[] body = gzip(read(route.getValue()));
+            server.createContext(route.getKey(), exchange -> {
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, body.length);
+                try (var out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+        }
+        server.start();
+        System.setProperty("ao3.baseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        System.setProperty("ao3.cacheDir", Files.createTempDirectory("ao3-bench-cache").toString());
+    }
+
+    /** A new, empty folder for a benchmark library. */
+    public static Path tempLibrary() throws IOException {
+        return Files.createTempDirectory("ao3-bench-library");
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 3);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
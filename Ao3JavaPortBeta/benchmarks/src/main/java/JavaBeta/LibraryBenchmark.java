@@ -0,0 +1,79 @@
+package JavaBeta;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The offline library: opening and listing it (what the Library tab does on start-up and refresh)
+ * and opening a saved work for the reader.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LibraryBenchmark {
+
+    @Param({"100", "1000"})
+    public int works;
+
+    private Path directory;
+    private LibraryCatalog catalog;
+    private LibraryEntry entry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StoryContent story = StoryExtractor.extract(new ByteArrayInputStream(Corpus.read(Corpus.MULTI_CHAPTER_WORK)),
+                "UTF-8", "https://archiveofourown.org/works/50000001").story();
+        directory = Corpus.tempLibrary();
+        catalog = LibraryCatalog.open(directory);
+        // Identical chapters are stored once, so this stays small on disk while the catalog grows
+        for (int i = 0; i < works; i++) {
+            entry = catalog.saveWork("Work " + i, "writer" + (i % 37), "https://archiveofourown.org/works/" + (60000000 + i), story);
+        }
+    }
+
+    /** Reading the catalog from disk, as at start-up. */
+    @Benchmark
+    public List<LibraryEntry> openAndList() throws IOException {
+        return LibraryCatalog.open(directory).entries();
+    }
+
+    /** The sorted listing of an open catalog, as on every refresh. */
+    @Benchmark
+    public List<LibraryEntry> list() {
+        return catalog.entries();
+    }
+
+    /** Opening a saved work and decompressing the chapter the reader shows first. */
+    @Benchmark
+    public String openWork() throws IOException {
+        return catalog.openStory(entry).chapter(0);
+    }
+
+    /** Every chapter of a saved work, e.g. for an export. */
+    @Benchmark
+    public int readWholeWork() throws IOException {
+        StoryContent story = catalog.openStory(entry);
+        int length = 0;
+        for (int i = 0; i < story.chapterCount(); i++) length += story.chapter(i).length();
+        return length;
+    }
+}
@@ -0,0 +1,45 @@
+package JavaBeta;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Building the document a reader window loads, from the start of a work or resumed mid-way. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReaderPageBenchmark {
+
+    @Param({"0", "11"})
+    public int firstChapter;
+
+    private String chapterHtml;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StoryContent story = StoryExtractor.extract(new ByteArrayInputStream(Corpus.read(Corpus.MULTI_CHAPTER_WORK)),
+                "UTF-8", "https://archiveofourown.org/works/50000001").story();
+        chapterHtml = story.chapter(firstChapter);
+    }
+
+    @Benchmark
+    public String pageHtml() {
+        return ReaderPage.html(16, 1.5, "sepia", firstChapter, chapterHtml);
+    }
+}
@@ -0,0 +1,79 @@
+package JavaBeta;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Reading a page of search results into {@link Work}s, as {@link SearchClient} does for every page. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchPageBenchmark {
+
+    private byte[] page;
+    private String url;
+
+    /** Makes every fetch miss the cache, so it goes to the (local) server. */
+    @State(Scope.Thread)
+    public static class Uncached {
+        @Setup(Level.Invocation)
+        public void expire(SearchPageBenchmark benchmark) {
+            Ao3Client.get().cache().expire(benchmark.url);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Corpus.startServer();
+        page = Corpus.read(Corpus.SEARCH_PAGE);
+        url = SearchClient.searchUrl("rain", 1);
+    }
+
+    /** Parsing and blurb extraction alone, from bytes already in memory. */
+    @Benchmark
+    public List<Work> parse() throws IOException {
+        return works(Jsoup.parse(new ByteArrayInputStream(page), "UTF-8", url));
+    }
+
+    /** A page the response cache already holds. */
+    @Benchmark
+    public List<Work> fetchCached() throws IOException, InterruptedException {
+        return works(Ao3Client.get().fetchDocument(url));
+    }
+
+    /** The whole round trip: request, gzip, parse, blurbs, cache store. */
+    @Benchmark
+    public List<Work> fetchUncached(Uncached uncached) throws IOException, InterruptedException {
+        return works(Ao3Client.get().fetchDocument(url));
+    }
+
+    private static List<Work> works(Document doc) {
+        List<Work> works = new ArrayList<>(20);
+        SearchClient.parseLastPage(doc);
+        for (Element workEl : doc.select("li.work.blurb")) {
+            Work work = SearchClient.parseWork(workEl);
+            if (work != null) works.add(work);
+        }
+        return works;
+    }
+}
@@ -0,0 +1,73 @@
+package JavaBeta;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getting the story out of a work page: the streaming {@link StoryExtractor} the app uses, next to
+ * the whole-document parse it replaced as a baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WorkPageBenchmark {
+
+    @Param({Corpus.MULTI_CHAPTER_WORK, Corpus.ONE_SHOT_WORK})
+    public String page;
+
+    private byte[] bytes;
+    private String url;
+
+    /** Makes every fetch miss the cache, so it goes to the (local) server. */
+    @State(Scope.Thread)
+    public static class Uncached {
+        @Setup(Level.Invocation)
+        public void expire(WorkPageBenchmark benchmark) {
+            Ao3Client.get().cache().expire(benchmark.url);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Corpus.startServer();
+        bytes = Corpus.read(page);
+        url = Corpus.urlOf(page);
+    }
+
+    @Benchmark
+    public StoryExtractor.Extracted extract() throws IOException {
+        return StoryExtractor.extract(new ByteArrayInputStream(bytes), "UTF-8", url);
+    }
+
+    /** Baseline: parse the whole page, then split {@code #workskin}. */
+    @Benchmark
+    public StoryContent parseWholePage() throws IOException {
+        Document doc = Jsoup.parse(new ByteArrayInputStream(bytes), "UTF-8", url);
+        return StoryContent.fromWorkskin(doc.getElementById("workskin"));
+    }
+
+    /** What opening a work from the results costs end to end, minus AO3's own latency. */
+    @Benchmark
+    public StoryExtractor.Extracted fetchUncached(Uncached uncached) throws IOException, InterruptedException {
+        return StoryExtractor.fetch(url, null);
+    }
+}
@@ -0,0 +1,279 @@
+package JavaBeta;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Command-line front end for the core library: searches AO3 and downloads works into the offline
+ * library without starting JavaFX, e.g. on a server or from a cron job.
+ * <p>
+ * Results go to standard output, one tab-separated line per work, so they can be piped on;
+ * progress and errors go to standard error.
+ */
+public final class Ao3Cli {
+
+    private static final String USAGE = """
+            Usage: ao3 [--library DIR] [--metrics FILE] COMMAND [OPTIONS]
+
+            Commands:
+              search [--title T] [--author A] [--tags T] [--pages N] [WORDS...]
+                  Searches AO3 and prints url, title, author, words and kudos of each work.
+              download [--rate R] SOURCE...
+                  Saves works into the library. A source is a work URL, a series or user page, or a
+                  search query. Interrupted downloads resume where they stopped when run again.
+              list
+                  Prints the works in the library.
+              find QUERY
+                  Full-text search over the library.
+              export [--format epub|txt] DIR
+                  Exports every saved work into DIR.
+
+            Without --library, the app's own library in ~/AO3_Offline_Library is used.
+            --metrics writes fetch, parse and disk timings to FILE when the command ends.
+            """;
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private Path libraryDir;
+    private Path metricsFile;
+
+    private Ao3Cli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        int status = new Ao3Cli(System.out, System.err).run(args);
+        LibraryIO.shared().shutdown(); // Let queued library writes finish before the JVM exits
+        System.exit(status);
+    }
+
+    /** Runs one command; returns the process exit status (0 ok, 1 failed, 2 bad arguments). */
+    int run(String[] args) {
+        Deque<String> rest = new ArrayDeque<>(List.of(args));
+        try {
+            while (!rest.isEmpty() && rest.peek().startsWith("--")) {
+                String option = rest.pop();
+                if (option.equals("--library")) {
+                    libraryDir = Path.of(value(option, rest));
+                } else if (option.equals("--metrics")) {
+                    metricsFile = Path.of(value(option, rest));
+                } else if (option.equals("--help")) {
+                    out.print(USAGE);
+                    return 0;
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if (rest.isEmpty()) throw new IllegalArgumentException("No command given");
+            String command = rest.pop();
+            int status = switch (command) {
+                case "search" -> search(rest);
+                case "download" -> download(rest);
+                case "list" -> list();
+                case "find" -> find(rest);
+                case "export" -> export(rest);
+                default -> throw new IllegalArgumentException("Unknown command " + command);
+            };
+            if (metricsFile != null) Metrics.shared().dump(metricsFile);
+            return status;
+        } catch (IllegalArgumentException e) {
+            err.println("Error: " + e.getMessage());
+            err.print(USAGE);
+            return 2;
+        } catch (IOException e) {
+            err.println("Error: " + e.getMessage());
+            return 1;
+        } catch (CompletionException e) {
+            err.println("Error: " + LibraryIO.failureOf(e).getMessage());
+            return 1;
+        }
+    }
+
+    // --- Commands ---
+    /** Fetches page 1 to learn how many pages there are, then the rest at once. */
+    private int search(Deque<String> args) {
+        SearchQuery query = new SearchQuery();
+        int pages = 1;
+        List<String> words = new ArrayList<>();
+        while (!args.isEmpty()) {
+            String arg = args.pop();
+            switch (arg) {
+                case "--title" -> query.title(value(arg, args));
+                case "--author" -> query.author(value(arg, args));
+                case "--tags" -> query.tags(value(arg, args));
+                case "--pages" -> pages = positive(arg, value(arg, args));
+                default -> words.add(arg);
+            }
+        }
+        String text = query.any(String.join(" ", words)).build();
+        if (text.isEmpty()) throw new IllegalArgumentException("Nothing to search for");
+
+        SearchClient client = SearchClient.get();
+        SearchClient.Page first = client.search(text, 1).join();
+        print(first.works());
+        List<CompletableFuture<SearchClient.Page>> more = new ArrayList<>();
+        for (int page = 2; page <= Math.min(pages, first.lastPage()); page++) more.add(client.search(text, page));
+        for (CompletableFuture<SearchClient.Page> page : more) print(page.join().works());
+        err.println(first.lastPage() + " pages of results for " + text);
+        return 0;
+    }
+
+    private int download(Deque<String> args) throws IOException {
+        double rate = BulkDownload.DEFAULT_REQUESTS_PER_SECOND;
+        List<String> sources = new ArrayList<>();
+        while (!args.isEmpty()) {
+            String arg = args.pop();
+            if (arg.equals("--rate")) {
+                rate = rate(value(arg, args));
+            } else {
+                sources.add(arg);
+            }
+        }
+        if (sources.isEmpty()) throw new IllegalArgumentException("No sources to download");
+
+        Library library = library();
+        BulkDownload job = new BulkDownload(sources, library, rate);
+        AtomicBoolean done = new AtomicBoolean();
+        job.onProgress(new ProgressPrinter(err)::accept);
+        // Ctrl-C pauses the job; the checkpoint lets the same command pick up where it stopped
+        Thread pause = new Thread(() -> {
+            if (done.get()) return;
+            job.cancel();
+            try {
+                job.start().get(30, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                // Exiting anyway
+            }
+            LibraryIO.shared().shutdown();
+        });
+        Runtime.getRuntime().addShutdownHook(pause);
+        BulkDownload.Progress result = job.start().join();
+        done.set(true);
+        err.println(result.status());
+        return result.failed() == 0 ? 0 : 1;
+    }
+
+    private int list() throws IOException {
+        for (LibraryEntry entry : library().entries()) {
+            out.println(String.join("\t", orEmpty(entry.url()), entry.title(), entry.author(), entry.fileName()));
+        }
+        return 0;
+    }
+
+    private int find(Deque<String> args) throws IOException {
+        if (args.isEmpty()) throw new IllegalArgumentException("No query given");
+        Library library = library();
+        for (FullTextIndex.Hit hit : library.search(String.join(" ", args), 50).join()) {
+            LibraryEntry entry = library.catalog().get(hit.fileName());
+            if (entry == null) continue;
+            out.println(String.join("\t", entry.title(), entry.author(), hit.snippet().replaceAll("\\s+", " ")));
+        }
+        return 0;
+    }
+
+    private int export(Deque<String> args) throws IOException {
+        String format = "epub";
+        Path folder = null;
+        while (!args.isEmpty()) {
+            String arg = args.pop();
+            if (arg.equals("--format")) {
+                format = value(arg, args).toLowerCase(Locale.ROOT);
+            } else if (folder == null) {
+                folder = Path.of(arg);
+            } else {
+                throw new IllegalArgumentException("Unexpected argument " + arg);
+            }
+        }
+        if (folder == null) throw new IllegalArgumentException("No export folder given");
+        String extension = "." + format;
+        WorkExporter exporter = WorkExporter.all().stream()
+                .filter(x -> x.extension().equals(extension)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown format " + extension.substring(1)));
+
+        Library library = library();
+        List<LibraryEntry> entries = library.entries();
+        LibraryExport.Result result = new LibraryExport(library.catalog(), exporter, folder)
+                .exportAll(entries, done -> {
+                    if (done % 50 == 0 || done == entries.size()) err.println("Exported " + done + " of " + entries.size());
+                }, () -> false);
+        err.println("Exported " + result.exported() + " works to " + folder.toAbsolutePath());
+        for (String failure : result.failures()) err.println("Could not export: " + failure);
+        return result.failures().isEmpty() ? 0 : 1;
+    }
+
+    // --- Helpers ---
+    private Library library() throws IOException {
+        return libraryDir == null ? Library.shared() : Library.open(libraryDir);
+    }
+
+    private void print(List<Work> works) {
+        for (Work work : works) {
+            out.println(String.join("\t", work.getUrl(), work.getTitle(), work.getAuthor(),
+                    String.valueOf(work.getWords()), String.valueOf(work.getKudos())));
+        }
+    }
+
+    private static String value(String option, Deque<String> args) {
+        if (args.isEmpty()) throw new IllegalArgumentException(option + " needs a value");
+        return args.pop();
+    }
+
+    private static int positive(String option, String text) {
+        try {
+            int value = Integer.parseInt(text);
+            if (value > 0) return value;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(option + " must be a positive number");
+    }
+
+    private static double rate(String text) {
+        try {
+            double value = Double.parseDouble(text);
+            if (value > 0) return value;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("--rate must be a positive number of requests per second");
+    }
+
+    private static String orEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    /** Prints a progress line when the status changes or a work is done, not on every update. */
+    private static final class ProgressPrinter {
+        private final PrintStream err;
+        private String lastStatus = "";
+        private int lastCompleted = -1;
+
+        ProgressPrinter(PrintStream err) {
+            this.err = err;
+        }
+
+        synchronized void accept(BulkDownload.Progress p) {
+            if (!p.running()) return; // The final status is printed once the job ends
+            if (!p.status().equals(lastStatus)) {
+                lastStatus = p.status();
+                err.println(p.status());
+            }
+            if (p.total() > 0 && p.completed() != lastCompleted) {
+                lastCompleted = p.completed();
+                err.printf(Locale.ROOT, "%d/%d done, %d failed, %.1f works/min%s%n", p.completed(), p.total(),
+                        p.failed(), p.worksPerMinute(), p.eta().isEmpty() ? "" : ", ETA " + p.eta());
+            }
+        }
+    }
+}
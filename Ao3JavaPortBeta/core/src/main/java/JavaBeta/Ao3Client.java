@@ -0,0 +1,539 @@
+package JavaBeta;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The one fetch layer every AO3 request goes through.
+ * <p>
+ * A single {@link HttpClient} keeps its connections alive and pooled (HTTP/2 when the server offers
+ * it), so opening several works in a row reuses one TLS session instead of handshaking each time.
+ * Background work runs on virtual threads, and at most {@link #MAX_CONCURRENT_REQUESTS} requests are
+ * on the wire at once. The executor starts a thread per task on purpose: that semaphore is the bound.
+ * A fetch holds its permit until the body has been read, so connections and bodies in flight stay
+ * capped however many tasks are queued, and a task waiting for a permit is only a parked virtual
+ * thread. Callers that fan out, like {@link AssetStore}, deal with each result inside its task rather
+ * than holding finished bodies until all are done. Response bodies are parsed as they stream in (see {@link BodyParser}) while
+ * the decompressed bytes are written through to the cache's disk tier.
+ * <p>
+ * Every GET goes through a {@link ResponseCache} first: fresh entries are returned without any
+ * network traffic, stale ones are revalidated with If-None-Match / If-Modified-Since.
+ * <p>
+ * Bulk jobs pass a {@link RateLimiter}, which only paces requests that actually go to the network.
+ * When AO3 is throttling (429 or 503) a {@link ThrottledException} carries its Retry-After delay.
+ * <p>
+ * Fetches run through {@link #speculative} (see {@link Prefetcher}) give way to everything else: any
+ * other request that goes to the network is announced to {@link #onForegroundRequest} listeners first.
+ */
+public final class Ao3Client {
+
+    public static final String BASE_URL = System.getProperty("ao3.baseUrl", "https://archiveofourown.org"); // Overridable for local test servers
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/108.0.0.0 Safari/537.36";
+
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(15);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration SEARCH_TTL = Duration.ofMinutes(10);
+    private static final Duration WORK_TTL = Duration.ofHours(6);
+    private static final Duration CHAPTER_INDEX_TTL = Duration.ZERO; // Always revalidated, so update checks see new chapters
+    private static final int MAX_ATTEMPTS = 5;   // for paced (bulk) fetches
+    private static final int MAX_ASSET_BYTES = 32 * 1024 * 1024;
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(2);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(2);
+
+    private static final Ao3Client INSTANCE = new Ao3Client();
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ao3-fetch-", 0).factory());
+    private final Semaphore requestPermits = new Semaphore(MAX_CONCURRENT_REQUESTS, true);
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .executor(executor)
+            .build();
+    private final ResponseCache cache = new ResponseCache(ResponseCache.defaultDirectory());
+
+    // Set on threads running a speculative fetch; receives the size of each body downloaded
+    private static final ThreadLocal<LongConsumer> SPECULATIVE = new ThreadLocal<>();
+    private final List<Runnable> foregroundListeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger foregroundInFlight = new AtomicInteger();
+    private volatile long lastForeground = System.nanoTime() - Duration.ofMinutes(1).toNanos();
+
+    private Ao3Client() {
+        executor.execute(cache::trimDisk);
+    }
+
+    public static Ao3Client get() {
+        return INSTANCE;
+    }
+
+    public ResponseCache cache() {
+        return cache;
+    }
+
+    /** Runs a background job (e.g. a JavaFX {@code Task}) on a virtual thread. */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Gets the first search off to a quick start: opens the connection to AO3 (DNS, TLS and HTTP/2
+     * setup) and loads the HTTP and parser classes in the background. A failure, e.g. when offline,
+     * only prints a warning; the first real request simply connects itself.
+     */
+    public void warmUp() {
+        executor.execute(() -> {
+            try {
+                Jsoup.parse("<p></p>");
+                HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL + "/"))
+                        .timeout(CONNECT_TIMEOUT)
+                        .header("User-Agent", USER_AGENT)
+                        .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                        .build();
+                httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            } catch (IOException e) {
+                System.err.println("Warning: Could not warm up the connection to AO3: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /** A blocking fetch, for {@link #async}. */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws IOException, InterruptedException;
+    }
+
+    /** Runs {@code call} on a virtual thread; the future fails with whatever exception it throws. */
+    public <T> CompletableFuture<T> async(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(call.call());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Runs {@code call} as a speculative fetch on this thread: it doesn't announce itself as foreground
+     * work, and {@code bytesReceived} is told the size of every body it downloads.
+     */
+    public <T> T speculative(Call<T> call, LongConsumer bytesReceived) throws IOException, InterruptedException {
+        SPECULATIVE.set(bytesReceived);
+        try {
+            return call.call();
+        } finally {
+            SPECULATIVE.remove();
+        }
+    }
+
+    /** Called on the requesting thread before any non-speculative request goes to the network. */
+    public void onForegroundRequest(Runnable listener) {
+        foregroundListeners.add(listener);
+    }
+
+    /** How long until no foreground request has been on the wire for {@code quiet}; zero if that is already so. */
+    public Duration untilQuiet(Duration quiet) {
+        if (foregroundInFlight.get() > 0) return quiet;
+        long left = lastForeground + quiet.toNanos() - System.nanoTime();
+        return left > 0 ? Duration.ofNanos(left) : Duration.ZERO;
+    }
+
+    /** Fetches a page and parses it with Jsoup, using {@code url} as the base URI for relative links. */
+    public Document fetchDocument(String url) throws IOException, InterruptedException {
+        return fetchDocument(url, null);
+    }
+
+    /**
+     * Fetch for bulk jobs: a network request first waits for a slot from {@code limiter}, and failures
+     * that may clear up (throttling, 5xx, timeouts) are retried with exponential backoff. A throttling
+     * answer also pauses {@code limiter}, so every job sharing it backs off together. Without a limiter
+     * the fetch is the user's own and fails on the first error, so they can decide whether to retry.
+     */
+    public Document fetchDocument(String url, RateLimiter limiter) throws IOException, InterruptedException {
+        return fetchParsed(url, limiter, Metrics.PARSE_JSOUP, (body, charset) -> Jsoup.parse(body, charset, url));
+    }
+
+    /** Reads a response body as it arrives; whatever {@code parse} leaves unread is still cached. */
+    @FunctionalInterface
+    public interface BodyParser<T> {
+        T parse(InputStream body, String charset) throws IOException;
+    }
+
+    /**
+     * Like {@link #fetchDocument(String, RateLimiter)}, but {@code parse} reads the body straight off
+     * the connection instead of from a finished byte array, e.g. {@link StoryExtractor}. Its time,
+     * less the time spent waiting for the network, is counted under the {@link Metrics} {@code stage}.
+     */
+    public <T> T fetchParsed(String url, RateLimiter limiter, String stage, BodyParser<T> parse) throws IOException, InterruptedException {
+        if (limiter == null) return send(url, null, stage, parse);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return send(url, limiter, stage, parse);
+            } catch (ThrottledException e) {
+                if (attempt == MAX_ATTEMPTS) throw e;
+                Duration delay = e.retryAfter() != null ? e.retryAfter() : backoff(attempt);
+                System.err.println("Warning: AO3 is throttling requests (" + e.getStatusCode() + "), waiting " + delay.toSeconds() + "s");
+                limiter.pauseFor(delay);
+            } catch (HttpStatusException e) {
+                if (e.getStatusCode() < 500 || attempt == MAX_ATTEMPTS) throw e; // 404, 403 etc. won't get better
+                Thread.sleep(backoff(attempt));
+            } catch (IOException e) {
+                if (attempt == MAX_ATTEMPTS) throw e;
+                Thread.sleep(backoff(attempt));
+            }
+        }
+    }
+
+    /**
+     * Fetches the raw (decompressed) response body, from the cache when it holds a fresh copy.
+     * Non-2xx responses throw {@link HttpStatusException}.
+     */
+    public Response fetch(String url) throws IOException, InterruptedException {
+        return fetch(url, null);
+    }
+
+    /** Like {@link #fetch(String)}; {@code limiter} (may be null) paces requests that miss the cache. */
+    public Response fetch(String url, RateLimiter limiter) throws IOException, InterruptedException {
+        return send(url, limiter, null, (body, charset) -> new Response(body.readAllBytes(), charset));
+    }
+
+    /**
+     * One attempt: cache, then network. The body is parsed while it downloads and cached once it is
+     * complete. A successful attempt is timed stage by stage (see {@link #record}).
+     */
+    private <T> T send(String url, RateLimiter limiter, String stage, BodyParser<T> parse) throws IOException, InterruptedException {
+        Ao3Events.Fetch event = new Ao3Events.Fetch();
+        event.begin();
+        event.url = url;
+        event.parser = stage;
+        ResponseCache.Entry cached = cache.lookup(url);
+        if (cached != null && cached.isFresh(ttlFor(url))) {
+            cache.recordServed(cached);
+            event.source = "cache";
+            return parseStored(cached, parse, event);
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", USER_AGENT)
+                .header("Referer", "https://www.google.com")
+                .header("Accept", "text/html,application/xhtml+xml")
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        if (cached != null) {
+            if (cached.etag() != null) builder.header("If-None-Match", cached.etag());
+            if (cached.lastModified() != null) builder.header("If-Modified-Since", cached.lastModified());
+        }
+
+        LongConsumer speculative = SPECULATIVE.get();
+        boolean foreground = foregroundStarted();
+        try {
+            return exchange(url, limiter, parse, cached, builder.build(), event, speculative);
+        } finally {
+            if (foreground) foregroundEnded();
+        }
+    }
+
+    /** The network half of {@link #send}: waits for a permit, then sends {@code request} and reads the answer. */
+    private <T> T exchange(String url, RateLimiter limiter, BodyParser<T> parse, ResponseCache.Entry cached, HttpRequest request,
+                           Ao3Events.Fetch event, LongConsumer speculative) throws IOException, InterruptedException {
+        long waitStart = System.nanoTime();
+        if (limiter != null) limiter.acquire();
+        requestPermits.acquire();
+        event.waitTime = System.nanoTime() - waitStart;
+        // The permit is held until the body has been read, so it still caps the downloads in progress
+        try {
+            long sent = System.nanoTime();
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            event.timeToFirstByte = System.nanoTime() - sent;
+            try (InputStream raw = response.body()) {
+                int status = response.statusCode();
+                event.status = status;
+                if (status == 304 && cached != null) {
+                    ResponseCache.Entry refreshed = cache.revalidated(url, cached);
+                    cache.recordServed(refreshed);
+                    event.source = "revalidated";
+                    return parseStored(refreshed, parse, event);
+                }
+                if (status == 429 || status == 503) {
+                    throw new ThrottledException(status, url, retryAfterOf(response));
+                }
+                if (status < 200 || status >= 300) {
+                    throw new HttpStatusException("HTTP error fetching URL", status, url);
+                }
+
+                String charset = charsetOf(response);
+                try (ResponseCache.Download copy = cache.download(url, charset,
+                        response.headers().firstValue("ETag").orElse(null),
+                        response.headers().firstValue("Last-Modified").orElse(null))) {
+                    CopyingInputStream body = new CopyingInputStream(decode(response, raw), copy);
+                    long started = System.nanoTime();
+                    T result = parse.parse(body, charset);
+                    event.parseTime = System.nanoTime() - started - body.blockedNanos();
+                    body.finish();
+                    event.source = "network";
+                    event.downloadTime = body.blockedNanos();
+                    event.bytes = copy.bytes();
+                    record(event);
+                    if (speculative != null) speculative.accept(copy.bytes());
+                    copy.commit();
+                    return result;
+                }
+            }
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    /**
+     * Fetches an image or other file a work embeds, for the {@link AssetStore}. Assets are often hosted
+     * elsewhere and are kept for good once saved, so they skip the response cache and retries, but they
+     * still take a request permit. Bodies over {@link #MAX_ASSET_BYTES} fail.
+     */
+    public Asset fetchAsset(String url) throws IOException, InterruptedException {
+        Ao3Events.Fetch event = new Ao3Events.Fetch();
+        event.begin();
+        event.url = url;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", USER_AGENT)
+                .GET()
+                .build();
+        boolean foreground = foregroundStarted();
+        try {
+            long waitStart = System.nanoTime();
+            requestPermits.acquire();
+            event.waitTime = System.nanoTime() - waitStart;
+            try {
+                long sent = System.nanoTime();
+                HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                event.timeToFirstByte = System.nanoTime() - sent;
+                try (InputStream body = response.body()) {
+                    event.status = response.statusCode();
+                    if (event.status < 200 || event.status >= 300) {
+                        throw new HttpStatusException("HTTP error fetching URL", event.status, url);
+                    }
+                    long started = System.nanoTime();
+                    byte[] content = body.readNBytes(MAX_ASSET_BYTES + 1);
+                    if (content.length > MAX_ASSET_BYTES) throw new IOException("Larger than " + MAX_ASSET_BYTES / (1024 * 1024) + " MB");
+                    event.downloadTime = System.nanoTime() - started;
+                    event.source = "network";
+                    event.bytes = content.length;
+                    record(event);
+                    return new Asset(content, response.headers().firstValue("Content-Type").orElse(null));
+                }
+            } finally {
+                requestPermits.release();
+            }
+        } finally {
+            if (foreground) foregroundEnded();
+        }
+    }
+
+    /** Announces a request that is about to go to the network, unless it is speculative; true if it was announced. */
+    private boolean foregroundStarted() {
+        if (SPECULATIVE.get() != null) return false;
+        foregroundInFlight.incrementAndGet();
+        lastForeground = System.nanoTime();
+        for (Runnable listener : foregroundListeners) listener.run(); // Frees permits held by speculative fetches
+        return true;
+    }
+
+    private void foregroundEnded() {
+        lastForeground = System.nanoTime();
+        foregroundInFlight.decrementAndGet();
+    }
+
+    private static <T> T parseStored(ResponseCache.Entry entry, BodyParser<T> parse, Ao3Events.Fetch event) throws IOException {
+        long started = System.nanoTime();
+        T result = parse.parse(new ByteArrayInputStream(entry.body()), entry.charset());
+        event.parseTime = System.nanoTime() - started;
+        event.bytes = entry.body().length;
+        record(event);
+        return result;
+    }
+
+    /** Adds a fetch to {@link Metrics} and commits its JFR event. Cache hits have no network stages. */
+    private static void record(Ao3Events.Fetch event) {
+        Metrics metrics = Metrics.shared();
+        if (!"cache".equals(event.source)) {
+            metrics.record(Metrics.FETCH_WAIT, event.waitTime);
+            metrics.record(Metrics.FETCH_TTFB, event.timeToFirstByte);
+        }
+        if ("network".equals(event.source)) metrics.record(Metrics.FETCH_DOWNLOAD, event.downloadTime, event.bytes);
+        if (event.parser != null) metrics.record(event.parser, event.parseTime, event.bytes);
+        event.commit();
+    }
+
+    // --- Helpers ---
+    /**
+     * Search listings change quickly; work pages are revalidated less often. Chapter indexes are what
+     * the update check looks at, so they are always revalidated.
+     */
+    private static Duration ttlFor(String url) {
+        if (url.contains("/navigate")) return CHAPTER_INDEX_TTL;
+        return url.contains("/works/search") ? SEARCH_TTL : WORK_TTL;
+    }
+
+    private static Duration backoff(int attempt) {
+        long millis = BASE_BACKOFF.toMillis() << (attempt - 1);
+        millis += ThreadLocalRandom.current().nextLong(millis / 2 + 1); // Jitter keeps workers from retrying in lockstep
+        return Duration.ofMillis(Math.min(millis, MAX_BACKOFF.toMillis()));
+    }
+
+    private static InputStream decode(HttpResponse<?> response, InputStream raw) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        return encoding.equalsIgnoreCase("gzip") ? new GZIPInputStream(raw, 16 * 1024) : raw;
+    }
+
+    /** Retry-After as either delta-seconds or an HTTP date; null when absent or unreadable. */
+    private static Duration retryAfterOf(HttpResponse<?> response) {
+        String value = response.headers().firstValue("Retry-After").orElse(null);
+        if (value == null) return null;
+        try {
+            return Duration.ofSeconds(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                Duration delay = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    /** Charset from the Content-Type header, or null to let Jsoup sniff it from the markup. */
+    private static String charsetOf(HttpResponse<?> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        for (String param : contentType.split(";")) {
+            String p = param.trim();
+            if (p.regionMatches(true, 0, "charset=", 0, 8)) return p.substring(8).replace("\"", "");
+        }
+        return null;
+    }
+
+    /**
+     * Writes everything read through it to {@code copy}, for the cache, and times how long reads block
+     * on the network. Parsers may close it when they are done; the stream stays open until
+     * {@link #finish()} has read the rest of the body.
+     */
+    private static final class CopyingInputStream extends FilterInputStream {
+        private final OutputStream copy;
+        private long blockedNanos = 0;
+
+        CopyingInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            blockedNanos += System.nanoTime() - start;
+            if (b >= 0) copy.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            int n = super.read(buffer, offset, length);
+            blockedNanos += System.nanoTime() - start;
+            if (n > 0) copy.write(buffer, offset, n);
+            return n;
+        }
+
+        /** Time spent inside reads so far, i.e. waiting for (and inflating) the body. */
+        long blockedNanos() {
+            return blockedNanos;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Read rather than skip, so skipped bytes still end up in the copy
+            byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+            long left = n;
+            while (left > 0) {
+                int read = read(buffer, 0, (int) Math.min(left, buffer.length));
+                if (read < 0) break;
+                left -= read;
+            }
+            return n - left;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /** Reads whatever the parser left into the copy and closes the stream. */
+        void finish() throws IOException {
+            try {
+                transferTo(OutputStream.nullOutputStream());
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /** A decompressed response body plus the charset the server declared for it (may be null). */
+    public record Response(byte[] body, String charset) {
+    }
+
+    /** An embedded file's bytes and its Content-Type header (may be null). */
+    public record Asset(byte[] body, String contentType) {
+    }
+
+    /** AO3 is rate limiting us (429) or shedding load (503). */
+    public static final class ThrottledException extends HttpStatusException {
+        private static final long serialVersionUID = 1L;
+
+        private final Duration retryAfter;
+
+        ThrottledException(int status, String url, Duration retryAfter) {
+            super("Server is throttling requests", status, url);
+            this.retryAfter = retryAfter;
+        }
+
+        /** How long the server asked us to wait, or null if it didn't say. */
+        public Duration retryAfter() {
+            return retryAfter;
+        }
+    }
+}
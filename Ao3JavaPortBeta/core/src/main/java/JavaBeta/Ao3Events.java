@@ -0,0 +1,120 @@
+package JavaBeta;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom JFR events for the app's hot paths; they show up under "AO3 Reader" in JDK Mission Control.
+ * Record with {@code -XX:StartFlightRecording=filename=ao3.jfr}. The same stages are summed up in
+ * {@link Metrics}, which works without a recording.
+ */
+public final class Ao3Events {
+
+    private Ao3Events() {
+    }
+
+    /** One page fetched, from the cache or the network, and parsed as it arrived. */
+    @Name("ao3.Fetch")
+    @Label("Page Fetch")
+    @Category({"AO3 Reader", "Network"})
+    @StackTrace(false)
+    public static final class Fetch extends Event {
+        @Label("URL")
+        public String url;
+
+        @Label("Source")
+        @Description("cache, revalidated or network")
+        public String source;
+
+        @Label("Status")
+        public int status;
+
+        @Label("Parser")
+        @Description("The Metrics stage the parse time is counted under")
+        public String parser;
+
+        @Label("Wait")
+        @Timespan
+        public long waitTime;
+
+        @Label("Time to First Byte")
+        @Description("DNS, connect, TLS and server time")
+        @Timespan
+        public long timeToFirstByte;
+
+        @Label("Download")
+        @Description("Time the parser was blocked on the network")
+        @Timespan
+        public long downloadTime;
+
+        @Label("Parse")
+        @Timespan
+        public long parseTime;
+
+        @Label("Body Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    /** A library file read or written. */
+    @Name("ao3.LibraryIo")
+    @Label("Library I/O")
+    @Category({"AO3 Reader", "Library"})
+    @StackTrace(false)
+    public static final class LibraryIo extends Event {
+        @Label("Operation")
+        public String operation;
+
+        @Label("File")
+        public String file;
+
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    /** The app's launch: from JVM start to the first frame, and to the library listed in it. */
+    @Name("ao3.Startup")
+    @Label("Startup")
+    @Category({"AO3 Reader", "Startup"})
+    @StackTrace(false)
+    public static final class Startup extends Event {
+        @Label("First Frame")
+        @Timespan(Timespan.MILLISECONDS)
+        public long firstFrame;
+
+        @Label("Interactive")
+        @Timespan(Timespan.MILLISECONDS)
+        public long interactive;
+
+        @Label("Class Data Sharing")
+        public boolean classDataSharing;
+    }
+
+    /** The reader page built and shown, from the template to the first layout. */
+    @Name("ao3.ReaderRender")
+    @Label("Reader Render")
+    @Category({"AO3 Reader", "Reader"})
+    @StackTrace(false)
+    public static final class ReaderRender extends Event {
+        @Label("Title")
+        public String title;
+
+        @Label("First Chapter")
+        public int chapter;
+
+        @Label("Template")
+        @Timespan
+        public long templateTime;
+
+        @Label("Page Size")
+        @DataAmount
+        public long bytes;
+    }
+}
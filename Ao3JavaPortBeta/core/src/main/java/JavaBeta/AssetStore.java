@@ -0,0 +1,332 @@
+package JavaBeta;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Local copies of the images and media that saved works embed, shared by the whole library.
+ * <p>
+ * Each file is stored once under {@code .store/assets}, named by the SHA-256 of its bytes, so the same
+ * picture linked from several works (or under several URLs) takes the space once. An append-only
+ * {@code index} maps each remote URL to its copy, so saving another work that uses it downloads
+ * nothing. {@link #localize} points a work's markup at {@code ao3asset:<hash>} URLs, which the app
+ * serves from here; the remote URL stays in a {@code data-remote-*} attribute. {@link #collectGarbage}
+ * removes files no saved work points at any more.
+ */
+public final class AssetStore {
+
+    public static final String URL_SCHEME = "ao3asset";
+    private static final String INDEX_FILE = "index";
+    private static final String HEADER = "#AO3ASSETS 1";
+    private static final String REMOTE_PREFIX = "data-remote-";
+    // Elements whose src (or poster) the reader would load from the network
+    private static final String EMBEDS = "img[src], source[src], audio[src], video[src], video[poster], track[src]";
+    private static final Pattern LOCAL_URL = Pattern.compile(URL_SCHEME + ":([0-9a-f]{64})");
+    // Files stored or reused this recently are kept: the save that will point at them may still be queued
+    private static final Duration SWEEP_GRACE = Duration.ofHours(1);
+
+    /** A stored file and the media type it was served with. */
+    public record Stored(Path file, String contentType) {
+    }
+
+    private record Known(String hash, String contentType) {
+    }
+
+    private final Path directory;
+    private final Path indexFile;
+    private final Map<String, Known> byUrl = new HashMap<>();      // guarded by this
+    private final Map<String, String> typeByHash = new HashMap<>(); // guarded by this
+    private boolean loaded = false;                                  // guarded by this
+
+    public AssetStore(Path libraryDirectory) {
+        this.directory = directoryOf(libraryDirectory);
+        this.indexFile = directory.resolve(INDEX_FILE);
+    }
+
+    /**
+     * The work with every embedded remote file stored here and its markup pointing at the local copies.
+     * Files not stored yet are downloaded concurrently; one that fails (or isn't an image or media file)
+     * keeps its remote URL. Returns {@code story} itself when nothing embeds a remote file. Blocks.
+     */
+    public StoryContent localize(StoryContent story) throws InterruptedException {
+        List<String> parts = new ArrayList<>(story.chapterCount() + 2);
+        parts.add(story.preface());
+        for (int i = 0; i < story.chapterCount(); i++) parts.add(story.rawChapter(i));
+        parts.add(story.afterword());
+
+        // Pass one finds the URLs; a parsed chapter is dropped right away rather than held for pass two
+        Set<String> urls = new LinkedHashSet<>();
+        for (String part : parts) {
+            if (mayEmbed(part)) remoteEmbeds(Jsoup.parseBodyFragment(part).body(), (el, attr, url) -> urls.add(url));
+        }
+        if (urls.isEmpty()) return story;
+        Map<String, String> local = fetchMissing(urls);
+        if (local.isEmpty()) return story;
+
+        List<String> rewritten = new ArrayList<>(parts.size());
+        for (String part : parts) rewritten.add(mayEmbed(part) ? pointAtLocal(part, local) : part);
+        return StoryContent.of(rewritten.get(0), rewritten.subList(1, rewritten.size() - 1), rewritten.get(rewritten.size() - 1));
+    }
+
+    /** The local copy behind an {@code ao3asset:} URL. */
+    public Stored resolve(String localUrl) throws IOException {
+        String hash = localUrl.startsWith(URL_SCHEME + ":") ? localUrl.substring(URL_SCHEME.length() + 1) : "";
+        if (!hash.matches("[0-9a-f]{64}")) throw new FileNotFoundException("Not an asset URL: " + localUrl);
+        Path file = blobPath(hash);
+        if (!Files.exists(file)) throw new FileNotFoundException("No stored asset " + hash);
+        String contentType;
+        synchronized (this) {
+            load();
+            contentType = typeByHash.getOrDefault(hash, "application/octet-stream");
+        }
+        return new Stored(file, contentType);
+    }
+
+    /** Where the assets of the library in {@code libraryDirectory} are stored. */
+    public static Path directoryOf(Path libraryDirectory) {
+        return libraryDirectory.resolve(".store").resolve("assets");
+    }
+
+    /** The hashes of the stored files {@code markup} points at. */
+    public static Set<String> referencedIn(String markup) {
+        Set<String> hashes = new LinkedHashSet<>();
+        if (!markup.contains(URL_SCHEME + ":")) return hashes;
+        for (Matcher m = LOCAL_URL.matcher(markup); m.find(); ) hashes.add(m.group(1));
+        return hashes;
+    }
+
+    /**
+     * Deletes stored files whose hash is not in {@code used} and drops their index records. Files stored
+     * or reused within the last hour are kept, as a work being saved may not point at them yet. Meant
+     * for the library's write queue, after {@link WorkStore#collectGarbage()} worked out {@code used}.
+     */
+    public synchronized void collectGarbage(Set<String> used) throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        load();
+        FileTime cutoff = FileTime.from(Instant.now().minus(SWEEP_GRACE));
+        Set<String> removed = new HashSet<>();
+        try (Stream<Path> shards = Files.list(directory)) {
+            for (Path shard : (Iterable<Path>) shards::iterator) {
+                if (!Files.isDirectory(shard)) continue; // The index
+                boolean empty = true;
+                try (Stream<Path> files = Files.list(shard)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        String name = file.getFileName().toString();
+                        if (name.endsWith(".tmp") || used.contains(name) || Files.getLastModifiedTime(file).compareTo(cutoff) > 0) {
+                            empty = false;
+                        } else {
+                            Files.deleteIfExists(file);
+                            removed.add(name);
+                        }
+                    }
+                }
+                if (empty) Files.deleteIfExists(shard);
+            }
+        }
+        if (removed.isEmpty()) return;
+        byUrl.values().removeIf(known -> removed.contains(known.hash()));
+        typeByHash.keySet().removeAll(removed);
+        StringBuilder index = new StringBuilder(HEADER).append('\n');
+        byUrl.forEach((url, known) -> index.append(url).append('\t').append(known.hash()).append('\t').append(known.contentType()).append('\n'));
+        LibraryIO.writeAtomically(indexFile, index.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Puts the remote URLs back, for copies that leave the app, e.g. an EPUB export. */
+    public static void restoreRemote(Element root) {
+        for (Element el : root.select("[^" + REMOTE_PREFIX + "]")) {
+            for (Attribute attr : new ArrayList<>(el.attributes().asList())) {
+                if (!attr.getKey().startsWith(REMOTE_PREFIX)) continue;
+                el.attr(attr.getKey().substring(REMOTE_PREFIX.length()), attr.getValue());
+                el.removeAttr(attr.getKey());
+            }
+        }
+    }
+
+    // --- Fetching ---
+    /** Local URLs for {@code urls}, downloading the ones not stored yet; failures are left out. */
+    private Map<String, String> fetchMissing(Set<String> urls) throws InterruptedException {
+        Map<String, String> local = new HashMap<>();
+        Map<String, CompletableFuture<String>> downloads = new LinkedHashMap<>();
+        synchronized (this) {
+            try {
+                load();
+            } catch (IOException e) {
+                System.err.println("Warning: Could not read the asset index: " + e.getMessage());
+            }
+            for (String url : urls) {
+                Known known = byUrl.get(url);
+                if (known != null && keep(blobPath(known.hash()))) local.put(url, URL_SCHEME + ":" + known.hash());
+                // Stored as soon as it arrives, so finished downloads don't pile up in memory
+                else downloads.put(url, Ao3Client.get().async(() -> put(url, Ao3Client.get().fetchAsset(url))));
+            }
+        }
+        for (Map.Entry<String, CompletableFuture<String>> download : downloads.entrySet()) {
+            String url = download.getKey();
+            try {
+                local.put(url, URL_SCHEME + ":" + download.getValue().get());
+            } catch (ExecutionException e) {
+                System.err.println("Warning: Could not save " + url + " for offline reading: " + e.getCause().getMessage());
+            }
+        }
+        return local;
+    }
+
+    /** Stores a downloaded file unless an identical one is already here; returns its hash. */
+    private String put(String url, Ao3Client.Asset asset) throws IOException {
+        String contentType = mediaTypeOf(url, asset);
+        if (!contentType.startsWith("image/") && !contentType.startsWith("audio/") && !contentType.startsWith("video/")) {
+            throw new IOException("Not an image or media file (" + contentType + ")");
+        }
+        String hash = sha256(asset.body());
+        Path path = blobPath(hash);
+        synchronized (this) { // Not while collectGarbage is deciding whether to delete the same file
+            if (!keep(path)) {
+                Files.createDirectories(path.getParent());
+                LibraryIO.writeAtomically(path, asset.body());
+            }
+            byUrl.put(url, new Known(hash, contentType));
+            typeByHash.put(hash, contentType);
+            append(url + "\t" + hash + "\t" + contentType);
+        }
+        return hash;
+    }
+
+    /** The Content-Type header without parameters, or a guess from the bytes or the file name. */
+    private static String mediaTypeOf(String url, Ao3Client.Asset asset) {
+        String type = asset.contentType() == null ? "" : asset.contentType().split(";")[0].trim().toLowerCase();
+        if (!type.isEmpty() && !type.equals("application/octet-stream")) return type;
+        String guessed;
+        try {
+            guessed = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(asset.body()));
+        } catch (IOException e) {
+            guessed = null; // Can't happen reading from memory
+        }
+        if (guessed == null) guessed = URLConnection.guessContentTypeFromName(url.replaceAll("[?#].*", ""));
+        return guessed != null ? guessed : "application/octet-stream";
+    }
+
+    // --- Markup ---
+    @FunctionalInterface
+    private interface EmbedVisitor {
+        void visit(Element el, String attr, String url);
+    }
+
+    /** Cheap check before parsing: extracted works carry absolute URLs, so remote embeds start with http. */
+    private static boolean mayEmbed(String html) {
+        return html.contains("src=\"http") || html.contains("poster=\"http");
+    }
+
+    private static void remoteEmbeds(Element root, EmbedVisitor visitor) {
+        for (Element el : root.select(EMBEDS)) {
+            for (String attr : List.of("src", "poster")) {
+                String url = el.attr(attr);
+                boolean remote = url.startsWith("http://") || url.startsWith("https://");
+                if (remote && url.indexOf('\t') < 0 && url.indexOf('\n') < 0) visitor.visit(el, attr, url);
+            }
+        }
+    }
+
+    private static String pointAtLocal(String html, Map<String, String> local) {
+        Document doc = Jsoup.parseBodyFragment(html);
+        doc.outputSettings().prettyPrint(false);
+        boolean[] changed = { false };
+        remoteEmbeds(doc.body(), (el, attr, url) -> {
+            String localUrl = local.get(url);
+            if (localUrl == null) return;
+            el.attr(REMOTE_PREFIX + attr, url);
+            el.attr(attr, localUrl);
+            el.removeAttr("srcset"); // Would still load remote copies
+            changed[0] = true;
+        });
+        return changed[0] ? doc.body().html() : html; // Untouched chapters keep their bytes, and so their blobs
+    }
+
+    // --- Storage ---
+    private Path blobPath(String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /** Marks a stored file as just used so the sweep's grace period covers it; false if it isn't there. */
+    private static boolean keep(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return true;
+        } catch (IOException e) {
+            return Files.exists(file); // Gone, or on a file system that won't let us touch it
+        }
+    }
+
+    private void load() throws IOException {
+        if (loaded) return;
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            loaded = true;
+            return;
+        }
+        loaded = true; // Only once read: a failed read is tried again next time rather than leaving the maps empty
+        for (String line : lines) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split("\t", -1);
+            if (fields.length < 3) {
+                // A torn last line from a crash mid-append; everything before it is still good
+                System.err.println("Warning: Skipping damaged asset index record");
+                continue;
+            }
+            byUrl.put(fields[0], new Known(fields[1], fields[2]));
+            typeByHash.put(fields[1], fields[2]);
+        }
+    }
+
+    private void append(String record) throws IOException {
+        Files.createDirectories(directory);
+        boolean fresh = !Files.exists(indexFile);
+        try (BufferedWriter out = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (fresh) out.write(HEADER + "\n");
+            out.write(record);
+            out.write('\n');
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
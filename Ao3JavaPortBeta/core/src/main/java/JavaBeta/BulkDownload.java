@@ -0,0 +1,367 @@
+package JavaBeta;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a batch of works straight into the offline library, without opening any reader.
+ * <p>
+ * Sources are work URLs, series pages, user pages (works, bookmarks) or plain search queries; the
+ * listings are walked page by page and every work found is fetched by a small pool of workers that
+ * share one {@link RateLimiter}; see {@link Ao3Client#fetchDocument(String, RateLimiter)} for how
+ * throttling and transient failures are retried. Progress is appended to a checkpoint log under
+ * {@code .sync} in the library, so starting the same job again after a crash skips what is done.
+ * <p>
+ * Progress is reported to the {@link #onProgress} listener from the job's own threads, once per
+ * change; listeners that update a UI should coalesce the calls.
+ */
+public final class BulkDownload {
+
+    /**
+     * Where the job stands. {@code eta} is the estimated time left, e.g. "12m 30s", or empty when
+     * unknown.
+     */
+    public record Progress(boolean running, String status, int total, int completed, int failed,
+                           double worksPerMinute, String eta) {
+
+        /** Fraction done, or -1 (indeterminate) while the listings are still being read. */
+        public double fraction() {
+            return total == 0 ? (running ? -1 : 0) : (double) completed / total;
+        }
+    }
+
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 0.5;
+    private static final int WORKERS = 3;
+    private static final String CHECKPOINT_HEADER = "#AO3SYNC 1";
+    private static final Pattern WORK_URL = Pattern.compile("^https?://[^/]+/works/(\\d+)");
+
+    private final List<String> sources;
+    private final Library library;
+    private final LibraryCatalog catalog;
+    private final RateLimiter limiter;
+    private final Path checkpointFile;
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicInteger doneCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final CompletableFuture<Progress> finished = new CompletableFuture<>();
+    private volatile Consumer<Progress> listener = progress -> { };
+    private volatile int totalCount = 0;
+    private volatile String message = "";
+    private final AtomicInteger doneThisRun = new AtomicInteger();
+    private volatile long startedAt;
+
+    /** One work to fetch, as listed by its source. Title and author may be null for bare URLs. */
+    private record Item(String url, String title, String author) {
+    }
+
+    /** Works are saved through {@code library}, so they queue with its other writes and get indexed. */
+    public BulkDownload(List<String> sources, Library library, double requestsPerSecond) {
+        this.sources = sources.stream().map(String::trim).filter(s -> !s.isEmpty()).toList();
+        this.library = library;
+        this.catalog = library.catalog();
+        this.limiter = new RateLimiter(requestsPerSecond);
+        this.checkpointFile = checkpointDirectory(catalog).resolve(jobId(this.sources) + ".log");
+    }
+
+    /** Sources of a job that was interrupted before it finished, or an empty list. */
+    public static List<String> interruptedSources(LibraryCatalog catalog) {
+        try (var files = Files.list(checkpointDirectory(catalog))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                List<String> found = new ArrayList<>();
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    if (line.startsWith("SRC\t")) found.add(unescape(line.substring(4)));
+                }
+                if (!found.isEmpty()) return found;
+            }
+        } catch (IOException e) {
+            // No checkpoint directory yet
+        }
+        return List.of();
+    }
+
+    /** Replaces the progress listener; set it before {@link #start()} to see every update. */
+    public void onProgress(Consumer<Progress> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts the job in the background. The future completes with the final progress when the job
+     * ends, whether it finished, was cancelled or failed; its status says which.
+     */
+    public CompletableFuture<Progress> start() {
+        if (running.compareAndSet(false, true)) {
+            startedAt = System.nanoTime();
+            synchronized (threads) {
+                threads.add(Thread.ofVirtual().name("sync-job").start(this::run));
+            }
+        }
+        return finished;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /** Stops after the requests in flight; the checkpoint is kept so the job can be resumed. */
+    public void cancel() {
+        cancelled.set(true);
+        synchronized (threads) {
+            for (Thread thread : threads) thread.interrupt();
+        }
+    }
+
+    /** Takes effect for the next request. */
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        limiter.setRate(requestsPerSecond);
+    }
+
+    // --- Job ---
+    private void run() {
+        try {
+            Files.createDirectories(checkpointFile.getParent());
+            Checkpoint checkpoint = Checkpoint.read(checkpointFile);
+            if (checkpoint.items.isEmpty() || !checkpoint.listed) {
+                if (checkpoint.sources.isEmpty()) appendCheckpoint(sources.stream().map(s -> "SRC\t" + escape(s)).toList());
+                list(checkpoint);
+            }
+            if (cancelled.get()) {
+                message = "Paused. Start the same job again to resume.";
+                return;
+            }
+
+            ConcurrentLinkedQueue<Item> queue = new ConcurrentLinkedQueue<>();
+            for (Item item : checkpoint.items.values()) {
+                if (checkpoint.done.contains(item.url())) doneCount.incrementAndGet();
+                else queue.add(item);
+            }
+            totalCount = checkpoint.items.size();
+            message = queue.isEmpty() ? "Nothing left to download." : "Downloading " + queue.size() + " works...";
+            publish();
+
+            List<Thread> workers = new ArrayList<>();
+            synchronized (threads) {
+                for (int i = 0; i < Math.min(WORKERS, queue.size()); i++) {
+                    Thread worker = Thread.ofVirtual().name("sync-worker-" + i).start(() -> drain(queue));
+                    workers.add(worker);
+                    threads.add(worker);
+                }
+            }
+            for (Thread worker : workers) worker.join();
+
+            if (cancelled.get()) {
+                message = "Paused. Start the same job again to resume.";
+            } else if (failedCount.get() == 0) {
+                Files.deleteIfExists(checkpointFile); // Finished cleanly, nothing to resume
+                message = "Done: " + doneCount.get() + " saved, " + skippedCount.get() + " already in the library.";
+            } else {
+                message = "Finished with " + failedCount.get() + " failures. Start again to retry them.";
+            }
+        } catch (InterruptedException e) {
+            message = "Paused. Start the same job again to resume.";
+        } catch (IOException e) {
+            message = "Sync failed: " + e.getMessage();
+            System.err.println("Warning: Sync job failed: " + e.getMessage());
+        } finally {
+            running.set(false);
+            finished.complete(publish());
+        }
+    }
+
+    /** Walks every source's listing pages and records the works found. */
+    private void list(Checkpoint checkpoint) throws IOException, InterruptedException {
+        for (String source : sources) {
+            if (cancelled.get()) return;
+            Matcher work = WORK_URL.matcher(source);
+            if (work.find() && !source.contains("/works/search")) {
+                addItem(checkpoint, new Item(Ao3Client.BASE_URL + "/works/" + work.group(1), null, null));
+                continue;
+            }
+            int lastPage = 1;
+            for (int page = 1; page <= lastPage && !cancelled.get(); page++) {
+                message = "Listing " + source + " (page " + page + " of " + lastPage + ")...";
+                publish();
+                SearchClient.Page listing = SearchClient.get().fetchListing(listingUrl(source, page), limiter,
+                        found -> { }, cancelled::get);
+                lastPage = listing.lastPage();
+                for (Work found : listing.works()) addItem(checkpoint, new Item(found.getUrl(), found.getTitle(), found.getAuthor()));
+            }
+        }
+        if (!cancelled.get()) {
+            appendCheckpoint(List.of("LISTED"));
+            checkpoint.listed = true;
+        }
+    }
+
+    private void addItem(Checkpoint checkpoint, Item item) throws IOException {
+        if (checkpoint.items.putIfAbsent(item.url(), item) != null) return;
+        appendCheckpoint(List.of(String.join("\t", "WORK", escape(item.url()), escape(item.title()), escape(item.author()))));
+        totalCount = checkpoint.items.size();
+        publish();
+    }
+
+    private static String listingUrl(String source, int page) {
+        if (!source.startsWith("http")) return SearchClient.searchUrl(source, page);
+        String base = source.replaceAll("[?&]page=\\d+", "");
+        return base + (base.contains("?") ? "&" : "?") + "page=" + page;
+    }
+
+    private void drain(ConcurrentLinkedQueue<Item> queue) {
+        Item item;
+        while (!cancelled.get() && (item = queue.poll()) != null) {
+            try {
+                if (catalog.findByUrl(item.url()) != null) {
+                    skippedCount.incrementAndGet();
+                } else {
+                    save(item);
+                }
+                doneCount.incrementAndGet();
+                doneThisRun.incrementAndGet();
+                appendCheckpoint(List.of("DONE\t" + escape(item.url())));
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (cancelled.get()) return;
+                failedCount.incrementAndGet();
+                System.err.println("Warning: Could not sync " + item.url() + ": " + e.getMessage());
+            }
+            publish();
+        }
+    }
+
+    private void save(Item item) throws IOException, InterruptedException {
+        StoryExtractor.Extracted work = WorkFetcher.get().fetch(item.url(), limiter);
+        String title = item.title() != null ? item.title() : work.title() != null ? work.title() : "Untitled";
+        String author = item.author() != null ? item.author() : work.author() != null ? work.author() : "Anonymous";
+        LibraryIO.await(library.save(title, author, item.url(), work.story(), work.updated()));
+    }
+
+    // --- Progress ---
+    /** Hands the current counters to the listener and returns them. */
+    private Progress publish() {
+        int all = totalCount;
+        int done = doneCount.get();
+        int left = Math.max(0, all - done - failedCount.get());
+        double minutes = (System.nanoTime() - startedAt) / 60e9;
+        double rate = minutes > 0 ? doneThisRun.get() / minutes : 0;
+        String eta = left == 0 || rate == 0 ? "" : formatDuration(Duration.ofSeconds((long) (left / rate * 60)));
+        Progress progress = new Progress(running.get(), message, all, done, failedCount.get(), rate, eta);
+        listener.accept(progress);
+        return progress;
+    }
+
+    private static String formatDuration(Duration d) {
+        if (d.toHours() > 0) return d.toHours() + "h " + d.toMinutesPart() + "m";
+        if (d.toMinutes() > 0) return d.toMinutes() + "m " + d.toSecondsPart() + "s";
+        return d.toSeconds() + "s";
+    }
+
+    // --- Checkpoint ---
+    /**
+     * Append-only log of the job: its sources, the works listed, a LISTED marker once every listing
+     * was walked, and a DONE line per work saved.
+     */
+    private static final class Checkpoint {
+        final List<String> sources = new ArrayList<>();
+        final Map<String, Item> items = new LinkedHashMap<>();
+        final Set<String> done = new LinkedHashSet<>();
+        boolean listed = false;
+
+        static Checkpoint read(Path file) throws IOException {
+            Checkpoint checkpoint = new Checkpoint();
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            } catch (NoSuchFileException e) {
+                return checkpoint;
+            }
+            for (String line : lines) {
+                String[] f = line.split("\t", -1);
+                switch (f[0]) {
+                    case "SRC" -> checkpoint.sources.add(unescape(f[1]));
+                    case "WORK" -> {
+                        if (f.length < 4) continue; // Torn last line
+                        checkpoint.items.put(unescape(f[1]), new Item(unescape(f[1]), unescape(f[2]), unescape(f[3])));
+                    }
+                    case "LISTED" -> checkpoint.listed = true;
+                    case "DONE" -> checkpoint.done.add(unescape(f[1]));
+                    default -> { }
+                }
+            }
+            return checkpoint;
+        }
+    }
+
+    private void appendCheckpoint(List<String> records) throws IOException {
+        synchronized (checkpointFile) {
+            boolean fresh = !Files.exists(checkpointFile);
+            try (BufferedWriter out = Files.newBufferedWriter(checkpointFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (fresh) out.write(CHECKPOINT_HEADER + "\n");
+                for (String record : records) {
+                    out.write(record);
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    // --- Helpers ---
+    private static Path checkpointDirectory(LibraryCatalog catalog) {
+        return catalog.directory().resolve(".sync");
+    }
+
+    /** The same list of sources always maps to the same checkpoint, which is what makes resuming work. */
+    private static String jobId(List<String> sources) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(String.join("\n", sources).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String escape(String s) {
+        return s == null ? "" : s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String s) {
+        if (s.isEmpty()) return null;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,175 @@
+package JavaBeta;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Entities;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exports a work as an EPUB 3 book: one XHTML file per chapter, plus the preface and afterword of
+ * multi-chapter works, a navigation document listing the chapter titles and the package metadata.
+ * <p>
+ * Each chapter is converted and written to the ZIP as soon as it is loaded; the manifest and table
+ * of contents are written last, from the few names and titles collected on the way.
+ */
+public final class EpubExporter implements WorkExporter {
+
+    private static final String STYLESHEET = """
+            body { margin: 0 0.5em; line-height: 1.5; }
+            p { margin: 0 0 1em 0; }
+            blockquote { margin-left: 2em; padding-left: 1em; border-left: 3px solid #ccc; }
+            hr { border: none; border-top: 1px solid #ccc; margin: 2em 0; }
+            """;
+
+    /** One XHTML file of the book. */
+    private record Item(String id, String file, String title, boolean remoteImages) {
+    }
+
+    @Override
+    public String extension() {
+        return ".epub";
+    }
+
+    @Override
+    public String description() {
+        return "EPUB e-book";
+    }
+
+    @Override
+    public void export(LibraryEntry entry, StoryContent story, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        writeMimetype(zip);
+        put(zip, "META-INF/container.xml", """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <container version="1.0" xmlns="urn:oasis:names:tc:opendocument:xmlns:container">
+                  <rootfiles>
+                    <rootfile full-path="OEBPS/content.opf" media-type="application/oebps-package+xml"/>
+                  </rootfiles>
+                </container>
+                """);
+        put(zip, "OEBPS/style.css", STYLESHEET);
+
+        List<Item> items = new ArrayList<>();
+        boolean multiChapter = story.chapterCount() > 1;
+        if (multiChapter && !story.preface().isBlank()) {
+            items.add(writePage(zip, "preface", story.preface(), entry.title()));
+        }
+        for (int i = 0; i < story.chapterCount(); i++) {
+            String html = multiChapter ? story.rawChapter(i) : story.chapter(i);
+            String fallback = multiChapter ? "Chapter " + (i + 1) : entry.title();
+            items.add(writePage(zip, String.format("chapter-%03d", i + 1), html, fallback));
+        }
+        if (multiChapter && !story.afterword().isBlank()) {
+            items.add(writePage(zip, "afterword", story.afterword(), "Afterword"));
+        }
+
+        put(zip, "OEBPS/nav.xhtml", navigation(entry, items));
+        put(zip, "OEBPS/content.opf", packageDocument(entry, items));
+        zip.finish();
+    }
+
+    /** The uncompressed {@code mimetype} entry EPUB readers look for at the very start of the file. */
+    private static void writeMimetype(ZipOutputStream zip) throws IOException {
+        byte[] bytes = "application/epub+zip".getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ZipEntry mimetype = new ZipEntry("mimetype");
+        mimetype.setMethod(ZipEntry.STORED);
+        mimetype.setSize(bytes.length);
+        mimetype.setCompressedSize(bytes.length);
+        mimetype.setCrc(crc.getValue());
+        zip.putNextEntry(mimetype);
+        zip.write(bytes);
+        zip.closeEntry();
+    }
+
+    private static void put(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    /** Converts one chapter's markup to XHTML and writes it; the title comes from AO3's chapter heading. */
+    private static Item writePage(ZipOutputStream zip, String id, String html, String fallbackTitle) throws IOException {
+        Document doc = Jsoup.parseBodyFragment(html);
+        doc.outputSettings().syntax(Document.OutputSettings.Syntax.xml)
+                .escapeMode(Entities.EscapeMode.xhtml).charset(StandardCharsets.UTF_8).prettyPrint(false);
+        AssetStore.restoreRemote(doc.body()); // Library-local image URLs mean nothing outside the app
+        Element heading = doc.body().selectFirst("h3.title, h2.title");
+        String title = heading == null || heading.text().isBlank() ? fallbackTitle : heading.text().trim();
+        boolean remoteImages = doc.body().selectFirst("img[src^=http]") != null;
+
+        zip.putNextEntry(new ZipEntry("OEBPS/" + id + ".xhtml"));
+        zip.write(("""
+                <?xml version="1.0" encoding="UTF-8"?>
+                <!DOCTYPE html>
+                <html xmlns="http://www.w3.org/1999/xhtml" xmlns:epub="http://www.idpf.org/2007/ops">
+                <head><title>%s</title><link rel="stylesheet" type="text/css" href="style.css"/></head>
+                <body>""".formatted(escape(title))).getBytes(StandardCharsets.UTF_8));
+        zip.write(doc.body().html().getBytes(StandardCharsets.UTF_8));
+        zip.write("</body>\n</html>\n".getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+        return new Item(id, id + ".xhtml", title, remoteImages);
+    }
+
+    private static String navigation(LibraryEntry entry, List<Item> items) {
+        StringBuilder nav = new StringBuilder("""
+                <?xml version="1.0" encoding="UTF-8"?>
+                <!DOCTYPE html>
+                <html xmlns="http://www.w3.org/1999/xhtml" xmlns:epub="http://www.idpf.org/2007/ops">
+                <head><title>%s</title></head>
+                <body>
+                <nav epub:type="toc" id="toc"><h1>Contents</h1><ol>
+                """.formatted(escape(entry.title())));
+        for (Item item : items) {
+            nav.append("<li><a href=\"").append(item.file()).append("\">").append(escape(item.title())).append("</a></li>\n");
+        }
+        return nav.append("</ol></nav>\n</body>\n</html>\n").toString();
+    }
+
+    private static String packageDocument(LibraryEntry entry, List<Item> items) {
+        String identifier = entry.url() != null && !entry.url().isBlank() ? entry.url()
+                : "urn:uuid:" + UUID.nameUUIDFromBytes(entry.fileName().getBytes(StandardCharsets.UTF_8));
+        Instant modified = Instant.ofEpochMilli(entry.savedAt()).truncatedTo(ChronoUnit.SECONDS);
+
+        StringBuilder opf = new StringBuilder("""
+                <?xml version="1.0" encoding="UTF-8"?>
+                <package xmlns="http://www.idpf.org/2007/opf" version="3.0" unique-identifier="book-id">
+                  <metadata xmlns:dc="http://purl.org/dc/elements/1.1/">
+                    <dc:identifier id="book-id">%s</dc:identifier>
+                    <dc:title>%s</dc:title>
+                """.formatted(escape(identifier), escape(entry.title())));
+        if (entry.author() != null) opf.append("    <dc:creator>").append(escape(entry.author())).append("</dc:creator>\n");
+        if (entry.url() != null) opf.append("    <dc:source>").append(escape(entry.url())).append("</dc:source>\n");
+        opf.append("    <dc:language>und</dc:language>\n"); // AO3 works come in any language; the library doesn't record which
+        opf.append("    <dc:publisher>Archive of Our Own</dc:publisher>\n");
+        opf.append("    <meta property=\"dcterms:modified\">").append(modified).append("</meta>\n");
+        opf.append("  </metadata>\n  <manifest>\n");
+        opf.append("    <item id=\"nav\" href=\"nav.xhtml\" media-type=\"application/xhtml+xml\" properties=\"nav\"/>\n");
+        opf.append("    <item id=\"style\" href=\"style.css\" media-type=\"text/css\"/>\n");
+        for (Item item : items) {
+            opf.append("    <item id=\"").append(item.id()).append("\" href=\"").append(item.file())
+                    .append("\" media-type=\"application/xhtml+xml\"")
+                    .append(item.remoteImages() ? " properties=\"remote-resources\"" : "").append("/>\n");
+        }
+        opf.append("  </manifest>\n  <spine>\n");
+        for (Item item : items) opf.append("    <itemref idref=\"").append(item.id()).append("\"/>\n");
+        return opf.append("  </spine>\n</package>\n").toString();
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,495 @@
+package JavaBeta;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Inverted index over the text of every work in the offline library.
+ * <p>
+ * The index is a set of immutable {@link IndexSegment} files in {@code .index} inside the library,
+ * listed in a small {@code segments} manifest. New works are written as new segments; small
+ * segments are merged once there are enough of them. Deleting or re-saving a work marks its old
+ * document as deleted instead of rewriting anything. Because a segment only becomes visible when
+ * the manifest names it, an interrupted bulk index simply resumes with the works that are missing.
+ * Segments and the manifest are forced to disk before they are renamed into place; a segment that
+ * is damaged anyway is dropped when the index opens, and its works are indexed again.
+ * <p>
+ * Queries are terms and "quoted phrases"; every clause must match, and hits are ranked with BM25.
+ */
+public final class FullTextIndex {
+
+    private static final String MANIFEST_FILE = "segments";
+    private static final String DELETED_FILE = "deleted";
+    private static final long BATCH_BYTES = 32L * 1024 * 1024; // Library bytes per bulk-index segment
+    private static final int BATCH_DOCS = 256;
+    private static final long SMALL_SEGMENT_BYTES = 4L * 1024 * 1024;
+    private static final int MAX_SMALL_SEGMENTS = 8;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int SNIPPET_BEFORE = 80;
+    private static final int SNIPPET_AFTER = 160;
+
+    private static FullTextIndex shared;
+
+    private final Path directory;
+    private final TextSource textSource;
+    private final AtomicLong segmentCounter = new AtomicLong(System.currentTimeMillis());
+
+    // Readers work on whatever snapshot is current; writers replace these under the lock
+    private volatile List<IndexSegment> segments = List.of();
+    private volatile Map<String, BitSet> deletedDocs = Map.of();
+    private final Map<String, DocRef> liveDocs = new HashMap<>(); // fileName -> newest document, guarded by this
+
+    /** Supplies the plain text of a saved work for indexing. */
+    public interface TextSource {
+        String textOf(LibraryEntry entry) throws IOException;
+    }
+
+    /** A ranked search result; {@code snippet} is plain text around the first match. */
+    public record Hit(String fileName, double score, String snippet) {
+    }
+
+    private record DocRef(String segment, int doc, String contentHash) {
+    }
+
+    private FullTextIndex(Path directory, TextSource textSource) {
+        this.directory = directory;
+        this.textSource = textSource;
+    }
+
+    /** The index of the default library, opened on first use. */
+    public static synchronized FullTextIndex shared() throws IOException {
+        if (shared == null) {
+            LibraryCatalog catalog = LibraryCatalog.shared();
+            shared = open(catalog.directory().resolve(".index"), catalog::readText);
+        }
+        return shared;
+    }
+
+    public static FullTextIndex open(Path directory, TextSource textSource) throws IOException {
+        Files.createDirectories(directory);
+        FullTextIndex index = new FullTextIndex(directory, textSource);
+        index.load();
+        return index;
+    }
+
+    // --- Indexing ---
+    /**
+     * Makes the index match {@code entries}: works that are missing or whose content hash changed
+     * are indexed in parallel across all cores, and documents for works no longer listed are
+     * deleted. Work already in the index is skipped, so an interrupted run picks up where it
+     * stopped. Blocks until done; call it from a background thread.
+     */
+    public void indexAll(List<LibraryEntry> entries) throws IOException {
+        List<LibraryEntry> pending = new ArrayList<>();
+        synchronized (this) {
+            Set<String> wanted = new HashSet<>();
+            for (LibraryEntry entry : entries) {
+                wanted.add(entry.fileName());
+                DocRef live = liveDocs.get(entry.fileName());
+                if (live == null || !live.contentHash().equals(entry.contentHash())) pending.add(entry);
+            }
+            for (String fileName : new ArrayList<>(liveDocs.keySet())) {
+                if (!wanted.contains(fileName)) remove(fileName);
+            }
+        }
+        if (pending.isEmpty()) return;
+
+        List<List<LibraryEntry>> batches = new ArrayList<>();
+        List<LibraryEntry> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (LibraryEntry entry : pending) {
+            batch.add(entry);
+            batchBytes += entry.sizeBytes();
+            if (batchBytes >= BATCH_BYTES || batch.size() >= BATCH_DOCS) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+        }
+        if (!batch.isEmpty()) batches.add(batch);
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.submit(() -> batches.parallelStream().forEach(this::indexBatchQuietly)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException("Indexing failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        mergeSmallSegments();
+    }
+
+    /** Indexes (or re-indexes) one work, e.g. right after it was saved. */
+    public void index(LibraryEntry entry) throws IOException {
+        indexBatch(List.of(entry));
+        mergeSmallSegments();
+    }
+
+    /** Drops a work from search results. */
+    public synchronized void remove(String fileName) throws IOException {
+        DocRef live = liveDocs.remove(fileName);
+        if (live != null) markDeleted(live);
+    }
+
+    private void indexBatchQuietly(List<LibraryEntry> batch) {
+        try {
+            indexBatch(batch);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not write index segment: " + e.getMessage());
+        }
+    }
+
+    private void indexBatch(List<LibraryEntry> batch) throws IOException {
+        IndexSegment.Builder builder = new IndexSegment.Builder();
+        List<LibraryEntry> indexed = new ArrayList<>(batch.size());
+        for (LibraryEntry entry : batch) {
+            try {
+                builder.addDocument(entry.fileName() + "\t" + entry.contentHash(), textSource.textOf(entry));
+                indexed.add(entry);
+            } catch (IOException e) {
+                System.err.println("Warning: Skipping '" + entry.fileName() + "' while indexing: " + e.getMessage());
+            }
+        }
+        if (indexed.isEmpty()) return;
+        IndexSegment segment = writeSegment(builder);
+
+        synchronized (this) {
+            for (int doc = 0; doc < indexed.size(); doc++) {
+                LibraryEntry entry = indexed.get(doc);
+                DocRef previous = liveDocs.put(entry.fileName(), new DocRef(segment.name(), doc, entry.contentHash()));
+                if (previous != null) markDeleted(previous);
+            }
+            List<IndexSegment> updated = new ArrayList<>(segments);
+            updated.add(segment);
+            commit(updated);
+        }
+    }
+
+    private IndexSegment writeSegment(IndexSegment.Builder builder) throws IOException {
+        Path file = directory.resolve("seg-" + segmentCounter.incrementAndGet() + ".idx");
+        LibraryIO.writeAtomically(file, builder::write);
+        return IndexSegment.open(file);
+    }
+
+    /** Folds the small segments left by one-at-a-time saves into one, dropping deleted documents. */
+    private synchronized void mergeSmallSegments() throws IOException {
+        List<IndexSegment> small = new ArrayList<>();
+        for (IndexSegment segment : segments) {
+            if (Files.size(directory.resolve(segment.name())) < SMALL_SEGMENT_BYTES) small.add(segment);
+        }
+        if (small.size() < MAX_SMALL_SEGMENTS) return;
+
+        IndexSegment.Builder builder = new IndexSegment.Builder();
+        Map<String, int[]> docMaps = new HashMap<>();
+        for (IndexSegment segment : small) {
+            BitSet deleted = deletedDocs.getOrDefault(segment.name(), new BitSet());
+            int[] docMap = new int[segment.docCount()];
+            for (int doc = 0; doc < segment.docCount(); doc++) {
+                docMap[doc] = deleted.get(doc) ? -1 : builder.addStored(segment.key(doc), segment.tokenCount(doc),
+                        segment.compressedText(doc), segment.rawTextLength(doc));
+            }
+            docMaps.put(segment.name(), docMap);
+            segment.forEachTerm((term, postings) -> {
+                while (postings.next()) {
+                    int newDoc = docMap[postings.doc()];
+                    if (newDoc >= 0) builder.addPosting(term, newDoc, postings);
+                }
+            });
+        }
+        IndexSegment merged = writeSegment(builder);
+
+        for (Map.Entry<String, DocRef> e : liveDocs.entrySet()) {
+            int[] docMap = docMaps.get(e.getValue().segment());
+            if (docMap != null) {
+                e.setValue(new DocRef(merged.name(), docMap[e.getValue().doc()], e.getValue().contentHash()));
+            }
+        }
+        Map<String, BitSet> deleted = new HashMap<>(deletedDocs);
+        List<IndexSegment> updated = new ArrayList<>();
+        for (IndexSegment segment : segments) {
+            if (docMaps.containsKey(segment.name())) deleted.remove(segment.name());
+            else updated.add(segment);
+        }
+        updated.add(merged);
+        deletedDocs = deleted;
+        rewriteDeletedFile();
+        commit(updated);
+        for (IndexSegment segment : small) deleteQuietly(directory.resolve(segment.name()));
+    }
+
+    // --- Manifest and deletions ---
+    private synchronized void load() throws IOException {
+        Set<String> listed = new LinkedHashSet<>();
+        try {
+            for (String line : Files.readAllLines(directory.resolve(MANIFEST_FILE), StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) listed.add(line.trim());
+            }
+        } catch (NoSuchFileException e) {
+            // Fresh index
+        }
+
+        Map<String, BitSet> deleted = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(directory.resolve(DELETED_FILE), StandardCharsets.UTF_8)) {
+                String[] parts = line.split(" ");
+                if (parts.length == 2 && listed.contains(parts[0])) {
+                    deleted.computeIfAbsent(parts[0], k -> new BitSet()).set(Integer.parseInt(parts[1]));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing deleted yet
+        }
+
+        List<IndexSegment> opened = new ArrayList<>();
+        boolean dropped = false;
+        for (String name : new ArrayList<>(listed)) {
+            IndexSegment segment;
+            try {
+                segment = IndexSegment.open(directory.resolve(name));
+                if (segment.docCount() > 0) segment.key(segment.docCount() - 1); // Cheap check that the tables are readable
+            } catch (IOException | RuntimeException e) {
+                // Its works have no live document now, so the next indexAll indexes them again
+                System.err.println("Warning: Dropping damaged index segment " + name + ": " + e.getMessage());
+                listed.remove(name);
+                deleted.remove(name);
+                dropped = true;
+                continue;
+            }
+            opened.add(segment);
+            BitSet segmentDeleted = deleted.getOrDefault(name, new BitSet());
+            for (int doc = 0; doc < segment.docCount(); doc++) {
+                if (segmentDeleted.get(doc)) continue;
+                String[] key = segment.key(doc).split("\t", 2);
+                DocRef previous = liveDocs.put(key[0], new DocRef(name, doc, key[1]));
+                if (previous != null) deleted.computeIfAbsent(previous.segment(), k -> new BitSet()).set(previous.doc());
+            }
+        }
+        segments = List.copyOf(opened);
+        deletedDocs = deleted;
+        if (dropped) commit(opened);
+
+        // Segments a crash left behind before they made it into the manifest
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> p.getFileName().toString().startsWith("seg-"))
+                    .filter(p -> !listed.contains(p.getFileName().toString()))
+                    .forEach(FullTextIndex::deleteQuietly);
+        }
+    }
+
+    private void commit(List<IndexSegment> updated) throws IOException {
+        StringBuilder names = new StringBuilder();
+        for (IndexSegment segment : updated) names.append(segment.name()).append('\n');
+        LibraryIO.writeAtomically(directory.resolve(MANIFEST_FILE), names.toString().getBytes(StandardCharsets.UTF_8));
+        segments = List.copyOf(updated);
+    }
+
+    private void markDeleted(DocRef ref) throws IOException {
+        Map<String, BitSet> deleted = new HashMap<>(deletedDocs);
+        BitSet bits = (BitSet) deleted.getOrDefault(ref.segment(), new BitSet()).clone();
+        bits.set(ref.doc());
+        deleted.put(ref.segment(), bits);
+        deletedDocs = deleted;
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve(DELETED_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write(ref.segment() + " " + ref.doc() + "\n");
+        }
+    }
+
+    private void rewriteDeletedFile() throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (Map.Entry<String, BitSet> e : deletedDocs.entrySet()) {
+            e.getValue().stream().forEach(doc -> lines.append(e.getKey()).append(' ').append(doc).append('\n'));
+        }
+        LibraryIO.writeAtomically(directory.resolve(DELETED_FILE), lines.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Still mapped (Windows); load() removes it next time
+        }
+    }
+
+    // --- Searching ---
+    /** Runs a query and returns up to {@code limit} hits, best first. Safe to call while indexing. */
+    public List<Hit> search(String query, int limit) {
+        List<List<String>> clauses = parseQuery(query);
+        if (clauses.isEmpty()) return List.of();
+        Set<String> terms = new LinkedHashSet<>();
+        clauses.forEach(terms::addAll);
+
+        List<IndexSegment> segs = segments;
+        Map<String, BitSet> deleted = deletedDocs;
+        long docs = 0, tokens = 0;
+        Map<String, Integer> docFreqs = new HashMap<>();
+        for (IndexSegment segment : segs) {
+            docs += segment.docCount();
+            tokens += segment.totalTokens();
+            for (String term : terms) docFreqs.merge(term, segment.docFreq(term), Integer::sum);
+        }
+        if (docs == 0) return List.of();
+        double avgLength = (double) tokens / docs;
+        Map<String, Double> idf = new HashMap<>();
+        for (String term : terms) {
+            int df = docFreqs.get(term);
+            idf.put(term, Math.log(1 + (docs - df + 0.5) / (df + 0.5)));
+        }
+
+        PriorityQueue<Match> top = new PriorityQueue<>(Comparator.comparingDouble(Match::score));
+        for (IndexSegment segment : segs) {
+            searchSegment(segment, deleted.getOrDefault(segment.name(), new BitSet()), clauses, terms, idf, avgLength, top, limit);
+        }
+
+        List<Match> ranked = new ArrayList<>(top);
+        ranked.sort(Comparator.comparingDouble(Match::score).reversed());
+        List<Hit> hits = new ArrayList<>(ranked.size());
+        for (Match m : ranked) {
+            String fileName = m.segment().key(m.doc()).split("\t", 2)[0];
+            hits.add(new Hit(fileName, m.score(), snippet(m.segment().text(m.doc()), m.position())));
+        }
+        return hits;
+    }
+
+    private record Match(IndexSegment segment, int doc, double score, int position) {
+    }
+
+    private static void searchSegment(IndexSegment segment, BitSet deleted, List<List<String>> clauses, Set<String> terms,
+                                      Map<String, Double> idf, double avgLength, PriorityQueue<Match> top, int limit) {
+        Map<String, IndexSegment.Postings> cursors = new HashMap<>();
+        for (String term : terms) {
+            IndexSegment.Postings postings = segment.postings(term);
+            if (postings == null) return; // Every clause is required
+            cursors.put(term, postings);
+        }
+
+        // Leapfrog intersection: advance every cursor to the largest current document until they agree
+        int target = 0;
+        while (true) {
+            boolean aligned = true;
+            for (IndexSegment.Postings cursor : cursors.values()) {
+                if (!cursor.advance(target)) return;
+                if (cursor.doc() > target) {
+                    target = cursor.doc();
+                    aligned = false;
+                    break;
+                }
+            }
+            if (!aligned) continue;
+
+            int doc = target++;
+            if (deleted.get(doc)) continue;
+            int firstPosition = -1;
+            boolean matches = true;
+            for (List<String> clause : clauses) {
+                int position = clause.size() == 1 ? cursors.get(clause.get(0)).position(0) : phrasePosition(clause, cursors);
+                if (position < 0) {
+                    matches = false;
+                    break;
+                }
+                if (firstPosition < 0) firstPosition = position;
+            }
+            if (!matches) continue;
+
+            double lengthNorm = K1 * (1 - B + B * segment.tokenCount(doc) / avgLength);
+            double score = 0;
+            for (String term : terms) {
+                int tf = cursors.get(term).freq();
+                score += idf.get(term) * tf * (K1 + 1) / (tf + lengthNorm);
+            }
+            if (top.size() < limit) {
+                top.add(new Match(segment, doc, score, firstPosition));
+            } else if (score > top.peek().score()) {
+                top.poll();
+                top.add(new Match(segment, doc, score, firstPosition));
+            }
+        }
+    }
+
+    /** Position where the phrase starts in the current document, or -1 if its words are never adjacent. */
+    private static int phrasePosition(List<String> phrase, Map<String, IndexSegment.Postings> cursors) {
+        IndexSegment.Postings first = cursors.get(phrase.get(0));
+        for (int i = 0; i < first.freq(); i++) {
+            int start = first.position(i);
+            boolean all = true;
+            for (int k = 1; k < phrase.size() && all; k++) all = cursors.get(phrase.get(k)).hasPosition(start + k);
+            if (all) return start;
+        }
+        return -1;
+    }
+
+    /** Splits a query into clauses: one term each, or all the terms of a "quoted phrase". */
+    static List<List<String>> parseQuery(String query) {
+        List<List<String>> clauses = new ArrayList<>();
+        boolean inQuotes = false;
+        int start = 0;
+        for (int i = 0; i <= query.length(); i++) {
+            if (i < query.length() && query.charAt(i) != '"') continue;
+            List<String> words = new ArrayList<>();
+            forEachToken(query.substring(start, i), (term, s, e) -> words.add(term));
+            if (inQuotes) {
+                if (!words.isEmpty()) clauses.add(words);
+            } else {
+                for (String word : words) clauses.add(List.of(word));
+            }
+            inQuotes = !inQuotes;
+            start = i + 1;
+        }
+        return clauses;
+    }
+
+    private static String snippet(String text, int position) {
+        int[] span = {0, 0};
+        int[] index = {0};
+        forEachToken(text, (term, start, end) -> {
+            if (index[0]++ == position) {
+                span[0] = start;
+                span[1] = end;
+            }
+        });
+        int from = Math.max(0, span[0] - SNIPPET_BEFORE);
+        int to = Math.min(text.length(), span[1] + SNIPPET_AFTER);
+        while (from > 0 && from < span[0] && !Character.isWhitespace(text.charAt(from - 1))) from++;
+        while (to < text.length() && to > span[1] && !Character.isWhitespace(text.charAt(to))) to--;
+        return (from > 0 ? "…" : "") + text.substring(from, to).strip() + (to < text.length() ? "…" : "");
+    }
+
+    // --- Tokenizing ---
+    interface TokenSink {
+        void accept(String term, int start, int end);
+    }
+
+    /** Terms are maximal runs of letters and digits, lower-cased; {@code start}/{@code end} are char offsets. */
+    static void forEachToken(String text, TokenSink sink) {
+        int i = 0, n = text.length();
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(text.codePointAt(i))) i += Character.charCount(text.codePointAt(i));
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(text.codePointAt(i))) i += Character.charCount(text.codePointAt(i));
+            if (i > start) sink.accept(text.substring(start, i).toLowerCase(Locale.ROOT), start, i);
+        }
+    }
+}
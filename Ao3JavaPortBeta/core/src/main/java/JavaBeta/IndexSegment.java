@@ -0,0 +1,421 @@
+package JavaBeta;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * One immutable, memory-mapped file of the full-text index.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header    magic, version, docCount, termCount, totalTokens, docTableOffset, termTableOffset
+ * postings  per term: for each doc, varint docDelta, varint freq, freq x varint positionDelta
+ * texts     per doc: the plain text, deflated (used for snippets)
+ * docs      docCount x long record offset, then per doc: tokenCount, textOffset, textLength, key
+ * terms     termCount x long record offset, then per term (sorted by UTF-8 bytes):
+ *           length + bytes, postingsOffset, docFreq
+ * </pre>
+ * Lookups binary-search the term table in place, so nothing but the postings being read is
+ * touched; the OS pages the file in and out as needed instead of it living on the Java heap.
+ */
+final class IndexSegment {
+
+    private static final int MAGIC = 0x414F3349; // "AO3I"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8 + 8 + 8;
+
+    private final String name;
+    private final MappedByteBuffer buf;
+    private final int docCount;
+    private final int termCount;
+    private final long totalTokens;
+    private final int docTableOffset;
+    private final int termTableOffset;
+
+    private IndexSegment(String name, MappedByteBuffer buf) throws IOException {
+        this.name = name;
+        this.buf = buf;
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) throw new IOException("Not an index segment: " + name);
+        this.docCount = buf.getInt(8);
+        this.termCount = buf.getInt(12);
+        this.totalTokens = buf.getLong(16);
+        this.docTableOffset = (int) buf.getLong(24);
+        this.termTableOffset = (int) buf.getLong(32);
+    }
+
+    static IndexSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() < HEADER_BYTES) throw new IOException("Truncated index segment: " + file.getFileName());
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new IndexSegment(file.getFileName().toString(), buf);
+        }
+    }
+
+    String name() {
+        return name;
+    }
+
+    int docCount() {
+        return docCount;
+    }
+
+    long totalTokens() {
+        return totalTokens;
+    }
+
+    int tokenCount(int doc) {
+        return buf.getInt(docRecord(doc));
+    }
+
+    /** The document key, "fileName\tcontentHash". */
+    String key(int doc) {
+        int record = docRecord(doc) + 4 + 8 + 4;
+        return readString(record);
+    }
+
+    int rawTextLength(int doc) {
+        int record = docRecord(doc);
+        return buf.getInt(record + 4 + 8 + 4 + 4 + buf.getInt(record + 4 + 8 + 4));
+    }
+
+    /** The plain text of a document, inflated from the segment. */
+    String text(int doc) {
+        byte[] compressed = compressedText(doc);
+        int rawLength = rawTextLength(doc);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) n += inflater.inflate(raw, n, rawLength - n);
+            return new String(raw, 0, n, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            return "";
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Number of documents containing {@code term}, or 0. */
+    int docFreq(String term) {
+        int record = findTerm(term);
+        return record < 0 ? 0 : buf.getInt(record + 4 + buf.getInt(record) + 8);
+    }
+
+    /** A cursor over the postings of {@code term}, or null when the segment does not contain it. */
+    Postings postings(String term) {
+        int record = findTerm(term);
+        if (record < 0) return null;
+        int termLength = buf.getInt(record);
+        int postingsOffset = (int) buf.getLong(record + 4 + termLength);
+        int docFreq = buf.getInt(record + 4 + termLength + 8);
+        return new Postings(buf.duplicate().position(postingsOffset), docFreq);
+    }
+
+    /** Visits every term with a fresh cursor over its postings, in term order. Used when merging. */
+    void forEachTerm(BiConsumer<String, Postings> visitor) {
+        for (int i = 0; i < termCount; i++) {
+            int record = (int) buf.getLong(termTableOffset + i * 8);
+            String term = readString(record);
+            int termLength = buf.getInt(record);
+            int postingsOffset = (int) buf.getLong(record + 4 + termLength);
+            int docFreq = buf.getInt(record + 4 + termLength + 8);
+            visitor.accept(term, new Postings(buf.duplicate().position(postingsOffset), docFreq));
+        }
+    }
+
+    // --- Table lookups ---
+    private int docRecord(int doc) {
+        return (int) buf.getLong(docTableOffset + doc * 8);
+    }
+
+    byte[] compressedText(int doc) {
+        int record = docRecord(doc);
+        int offset = (int) buf.getLong(record + 4);
+        int length = buf.getInt(record + 4 + 8);
+        byte[] bytes = new byte[length];
+        buf.get(offset, bytes);
+        return bytes;
+    }
+
+    private int findTerm(String term) {
+        byte[] wanted = term.getBytes(StandardCharsets.UTF_8);
+        int lo = 0, hi = termCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int record = (int) buf.getLong(termTableOffset + mid * 8);
+            int cmp = compareTerm(record, wanted);
+            if (cmp == 0) return record;
+            if (cmp < 0) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return -1;
+    }
+
+    private int compareTerm(int record, byte[] wanted) {
+        int length = buf.getInt(record);
+        int n = Math.min(length, wanted.length);
+        for (int i = 0; i < n; i++) {
+            int a = buf.get(record + 4 + i) & 0xff, b = wanted[i] & 0xff;
+            if (a != b) return a - b;
+        }
+        return length - wanted.length;
+    }
+
+    private String readString(int offset) {
+        int length = buf.getInt(offset);
+        byte[] bytes = new byte[length];
+        buf.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Forward-only cursor over one term's postings, in increasing document order. */
+    static final class Postings {
+        private final ByteBuffer in;
+        private int remaining;
+        private int doc = -1;
+        private int freq;
+        private int[] positions = new int[16];
+
+        private Postings(ByteBuffer in, int docFreq) {
+            this.in = in;
+            this.remaining = docFreq;
+        }
+
+        boolean next() {
+            if (remaining == 0) {
+                doc = Integer.MAX_VALUE;
+                return false;
+            }
+            remaining--;
+            doc += readVarInt(in) + (doc < 0 ? 1 : 0);
+            freq = readVarInt(in);
+            if (positions.length < freq) positions = new int[Math.max(freq, positions.length * 2)];
+            int pos = 0;
+            for (int i = 0; i < freq; i++) {
+                pos += readVarInt(in);
+                positions[i] = pos;
+            }
+            return true;
+        }
+
+        /** Advances to the first document at or after {@code target}. */
+        boolean advance(int target) {
+            while (doc < target) {
+                if (!next()) return false;
+            }
+            return true;
+        }
+
+        int doc() {
+            return doc;
+        }
+
+        int freq() {
+            return freq;
+        }
+
+        boolean hasPosition(int position) {
+            return Arrays.binarySearch(positions, 0, freq, position) >= 0;
+        }
+
+        int position(int i) {
+            return positions[i];
+        }
+    }
+
+    // --- Encoding ---
+    static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Collects documents in memory and writes them out as a segment. Documents get ids in the order
+     * they are added, which keeps every postings list sorted without a separate sort step.
+     */
+    static final class Builder {
+        private final Map<String, PostingList> terms = new HashMap<>();
+        private final List<String> keys = new ArrayList<>();
+        private final List<Integer> tokenCounts = new ArrayList<>();
+        private final List<byte[]> texts = new ArrayList<>();
+        private final List<Integer> rawTextLengths = new ArrayList<>();
+        private long totalTokens = 0;
+
+        int docCount() {
+            return keys.size();
+        }
+
+        /** Tokenizes and adds a document, returning its id in this segment. */
+        int addDocument(String key, String text) {
+            int doc = keys.size();
+            Map<String, int[]> positions = new HashMap<>();
+            int[] count = {0};
+            FullTextIndex.forEachToken(text, (term, start, end) -> {
+                int[] list = positions.computeIfAbsent(term, t -> new int[]{0, 0, 0, 0, 0});
+                if (list[0] + 1 == list.length) {
+                    list = Arrays.copyOf(list, list.length * 2);
+                    positions.put(term, list);
+                }
+                list[++list[0]] = count[0]++;
+            });
+            for (Map.Entry<String, int[]> e : positions.entrySet()) {
+                int[] list = e.getValue();
+                terms.computeIfAbsent(e.getKey(), t -> new PostingList()).add(doc, list, 1, list[0]);
+            }
+            byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+            addStored(key, count[0], deflate(raw), raw.length);
+            return doc;
+        }
+
+        /** Copies a document from another segment during a merge; postings are added separately. */
+        int addStored(String key, int tokenCount, byte[] compressedText, int rawLength) {
+            keys.add(key);
+            tokenCounts.add(tokenCount);
+            texts.add(compressedText);
+            rawTextLengths.add(rawLength);
+            totalTokens += tokenCount;
+            return keys.size() - 1;
+        }
+
+        void addPosting(String term, int doc, Postings from) {
+            terms.computeIfAbsent(term, t -> new PostingList()).add(doc, from.positions, 0, from.freq);
+        }
+
+        /** Writes the segment to {@code target}, which is flushed but left open. */
+        void write(OutputStream target) throws IOException {
+            List<Map.Entry<byte[], PostingList>> sorted = new ArrayList<>(terms.size());
+            for (Map.Entry<String, PostingList> e : terms.entrySet()) {
+                sorted.add(Map.entry(e.getKey().getBytes(StandardCharsets.UTF_8), e.getValue()));
+            }
+            sorted.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+            List<byte[]> keyBytes = new ArrayList<>(keys.size());
+            for (String key : keys) keyBytes.add(key.getBytes(StandardCharsets.UTF_8));
+
+            // Lay the file out before writing it: the segment is mapped as one buffer and read with int
+            // offsets, so a segment past 2 GB is refused up front rather than written with wrapped offsets
+            long position = HEADER_BYTES;
+            long[] postingsOffsets = new long[sorted.size()];
+            for (int i = 0; i < sorted.size(); i++) {
+                postingsOffsets[i] = position;
+                position += sorted.get(i).getValue().size;
+            }
+            long[] textOffsets = new long[keys.size()];
+            for (int doc = 0; doc < keys.size(); doc++) {
+                textOffsets[doc] = position;
+                position += texts.get(doc).length;
+            }
+            long docTableOffset = position;
+            position += keys.size() * 8L;
+            for (byte[] kb : keyBytes) position += 4 + 8 + 4 + 4 + kb.length + 4;
+            long termTableOffset = position;
+            position += sorted.size() * 8L;
+            for (Map.Entry<byte[], PostingList> e : sorted) position += 4 + e.getKey().length + 8 + 4;
+            if (position > Integer.MAX_VALUE) throw new IOException("Index segment too large (" + position + " bytes)");
+
+            DataOutputStream out = new DataOutputStream(target);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(keys.size());
+            out.writeInt(sorted.size());
+            out.writeLong(totalTokens);
+            out.writeLong(docTableOffset);
+            out.writeLong(termTableOffset);
+
+            for (Map.Entry<byte[], PostingList> e : sorted) out.write(e.getValue().bytes, 0, e.getValue().size);
+            for (byte[] text : texts) out.write(text);
+
+            long recordOffset = docTableOffset + keys.size() * 8L;
+            for (int doc = 0; doc < keys.size(); doc++) {
+                byte[] kb = keyBytes.get(doc);
+                out.writeLong(recordOffset);
+                recordOffset += 4 + 8 + 4 + 4 + kb.length + 4;
+            }
+            for (int doc = 0; doc < keys.size(); doc++) {
+                out.writeInt(tokenCounts.get(doc));
+                out.writeLong(textOffsets[doc]);
+                out.writeInt(texts.get(doc).length);
+                out.writeInt(keyBytes.get(doc).length);
+                out.write(keyBytes.get(doc));
+                out.writeInt(rawTextLengths.get(doc));
+            }
+
+            recordOffset = termTableOffset + sorted.size() * 8L;
+            for (Map.Entry<byte[], PostingList> e : sorted) {
+                out.writeLong(recordOffset);
+                recordOffset += 4 + e.getKey().length + 8 + 4;
+            }
+            for (int i = 0; i < sorted.size(); i++) {
+                byte[] term = sorted.get(i).getKey();
+                out.writeInt(term.length);
+                out.write(term);
+                out.writeLong(postingsOffsets[i]);
+                out.writeInt(sorted.get(i).getValue().docFreq);
+            }
+            out.flush(); // Not closed: the caller owns the stream
+        }
+
+        private static byte[] deflate(byte[] raw) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 3 + 16);
+                byte[] chunk = new byte[8192];
+                while (!deflater.finished()) out.write(chunk, 0, deflater.deflate(chunk));
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /** Growable varint-encoded postings for one term while a segment is being built. */
+    private static final class PostingList {
+        private byte[] bytes = new byte[16];
+        private int size = 0;
+        private int lastDoc = -1;
+        private int docFreq = 0;
+
+        void add(int doc, int[] positions, int from, int count) {
+            write(doc - lastDoc - (lastDoc < 0 ? 1 : 0));
+            write(count);
+            int previous = 0;
+            for (int i = from; i < from + count; i++) {
+                write(positions[i] - previous);
+                previous = positions[i];
+            }
+            lastDoc = doc;
+            docFreq++;
+        }
+
+        private void write(int value) {
+            if (size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            while ((value & ~0x7f) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+    }
+}
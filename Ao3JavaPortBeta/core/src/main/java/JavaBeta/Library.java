@@ -0,0 +1,151 @@
+package JavaBeta;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The offline library as one asynchronous API: the {@link LibraryCatalog} of saved works and the
+ * {@link FullTextIndex} over them, kept in step with each other.
+ * <p>
+ * Every operation runs through {@link LibraryIO}, so reads run in parallel and writes in the order
+ * they were submitted. Futures fail with the {@link IOException} behind the failure, wrapped as
+ * described in {@link LibraryIO#failureOf}.
+ */
+public final class Library {
+
+    private static Library shared;
+
+    private final LibraryCatalog catalog;
+    private final FullTextIndex index;
+    private final AtomicBoolean collectQueued = new AtomicBoolean();
+
+    public Library(LibraryCatalog catalog, FullTextIndex index) {
+        this.catalog = catalog;
+        this.index = index;
+    }
+
+    /** The library in {@link LibraryCatalog#defaultDirectory()}. */
+    public static synchronized Library shared() throws IOException {
+        if (shared == null) shared = new Library(LibraryCatalog.shared(), FullTextIndex.shared());
+        return shared;
+    }
+
+    /** A library in another folder, e.g. one given on the command line. */
+    public static Library open(Path directory) throws IOException {
+        LibraryCatalog catalog = LibraryCatalog.open(directory);
+        return new Library(catalog, FullTextIndex.open(directory.resolve(".index"), catalog::readText));
+    }
+
+    public LibraryCatalog catalog() {
+        return catalog;
+    }
+
+    public FullTextIndex index() {
+        return index;
+    }
+
+    /** The saved works, sorted by title. */
+    public List<LibraryEntry> entries() {
+        return catalog.entries();
+    }
+
+    /** Opens a saved work; stored works decompress their chapters only when asked for them. */
+    public CompletableFuture<StoryContent> open(LibraryEntry entry) {
+        return LibraryIO.shared().read(() -> catalog.openStory(entry));
+    }
+
+    /**
+     * Saves a work, with local copies of the images it embeds (see {@link AssetStore}), and adds it to the
+     * full-text index. The future completes once the work is on disk; indexing is queued behind the save.
+     */
+    public CompletableFuture<LibraryEntry> save(String title, String author, String url, StoryContent story, String updated) {
+        // Images are downloaded first, outside the write queue, so other library writes don't wait on the network
+        return indexLater(Ao3Client.get().async(() -> catalog.assets().localize(story))
+                .thenCompose(local -> LibraryIO.shared().write(() -> catalog.saveWork(title, author, url, local, updated))))
+                .whenComplete((entry, e) -> collectGarbageLater()); // Re-saving a work may leave its old chapters unused
+    }
+
+    /** Replaces a saved work with a newer version of it, like {@link #save}; unchanged chapters are not rewritten. */
+    public CompletableFuture<LibraryEntry> update(LibraryEntry old, StoryContent story, String updated) {
+        // Only images in new chapters are fetched; ones already stored are reused
+        return indexLater(Ao3Client.get().async(() -> catalog.assets().localize(story))
+                .thenCompose(local -> LibraryIO.shared().write(() -> catalog.updateWork(old, local, updated))))
+                .whenComplete((entry, e) -> collectGarbageLater());
+    }
+
+    /** Records AO3's latest update date for a work whose chapters are unchanged. */
+    public CompletableFuture<LibraryEntry> markUpdated(LibraryEntry entry, String updated) {
+        return LibraryIO.shared().write(() -> {
+            LibraryEntry dated = entry.withUpdated(updated);
+            catalog.put(dated);
+            return dated;
+        });
+    }
+
+    /** Queues indexing of the saved work once {@code saved} completes, so it also finishes before a shutdown. */
+    private CompletableFuture<LibraryEntry> indexLater(CompletableFuture<LibraryEntry> saved) {
+        saved.thenAccept(entry -> LibraryIO.shared().write(() -> {
+            index.index(entry);
+            return null;
+        }).exceptionally(e -> {
+            System.err.println("Warning: Could not index '" + entry.fileName() + "': " + LibraryIO.failureOf(e).getMessage());
+            return null;
+        }));
+        return saved;
+    }
+
+    /**
+     * Queues {@link WorkStore#collectGarbage()} behind the writes already queued, dropping blobs no saved
+     * work uses any more, then the assets none of the remaining blobs point at. Several calls before it
+     * runs collect once.
+     */
+    private void collectGarbageLater() {
+        if (!collectQueued.compareAndSet(false, true)) return;
+        LibraryIO.shared().write(() -> {
+            collectQueued.set(false);
+            catalog.assets().collectGarbage(catalog.store().collectGarbage());
+            return null;
+        }).exceptionally(e -> {
+            System.err.println("Warning: Could not clean up the work store: " + LibraryIO.failureOf(e).getMessage());
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> delete(LibraryEntry entry) {
+        CompletableFuture<Void> deleted = LibraryIO.shared().write(() -> {
+            Files.deleteIfExists(catalog.pathOf(entry));
+            catalog.remove(entry.fileName());
+            index.remove(entry.fileName());
+            return null;
+        });
+        collectGarbageLater();
+        return deleted;
+    }
+
+    /** Full-text search over the saved works, best matches first. */
+    public CompletableFuture<List<FullTextIndex.Hit>> search(String query, int limit) {
+        return LibraryIO.shared().read(() -> index.search(query, limit));
+    }
+
+    /**
+     * Picks up files added or removed outside the app and indexes anything new. The directory is scanned
+     * beside other reads; the catalog changes that follow are queued with the other writes.
+     */
+    public CompletableFuture<Void> reconcile() {
+        return LibraryIO.shared().read(catalog::scan)
+                .thenCompose(onDisk -> LibraryIO.shared().write(() -> {
+                    catalog.reconcile(onDisk);
+                    return null;
+                }))
+                .whenComplete((done, e) -> collectGarbageLater()) // Works deleted outside the app leave blobs behind
+                .thenCompose(done -> LibraryIO.shared().read(() -> {
+                    // Resumes where an earlier run stopped; works already indexed are skipped
+                    index.indexAll(catalog.entries());
+                    return null;
+                }));
+    }
+}
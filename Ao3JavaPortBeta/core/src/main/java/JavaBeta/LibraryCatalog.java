@@ -0,0 +1,394 @@
+package JavaBeta;
+
+import org.jsoup.Jsoup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Persistent catalog of the works in the offline library.
+ * <p>
+ * The catalog is an append-only log ({@code .catalog} inside the library directory) of PUT and DEL
+ * records, one per line, so opening it is a single file read no matter how many works are saved,
+ * and saving or deleting a work appends one line. The log is compacted when most of it is dead.
+ * {@link #scan()} and {@link #reconcile(Map)} walk the directory in the background to pick up files
+ * added or removed outside the app. Works themselves live in the {@link WorkStore}; legacy
+ * {@code .html} files are moved into it by {@code reconcile}.
+ */
+public final class LibraryCatalog {
+
+    private static final String CATALOG_FILE = ".catalog";
+    private static final String HEADER = "#AO3CATALOG 1";
+
+    private static LibraryCatalog shared;
+
+    private final Path directory;
+    private final Path catalogFile;
+    private final WorkStore store;
+    private final AssetStore assets;
+    private final Map<String, LibraryEntry> entries = new LinkedHashMap<>(); // guarded by this
+    private int recordCount = 0;                                            // guarded by this
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    private LibraryCatalog(Path directory) {
+        this.directory = directory;
+        this.catalogFile = directory.resolve(CATALOG_FILE);
+        this.store = new WorkStore(directory);
+        this.assets = new AssetStore(directory);
+    }
+
+    /** Default location: {@code ~/AO3_Offline_Library}. */
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), "AO3_Offline_Library");
+    }
+
+    /** The catalog of the default library, loaded on first use. */
+    public static synchronized LibraryCatalog shared() throws IOException {
+        if (shared == null) shared = open(defaultDirectory());
+        return shared;
+    }
+
+    public static LibraryCatalog open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        LibraryCatalog catalog = new LibraryCatalog(directory);
+        catalog.load();
+        return catalog;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public WorkStore store() {
+        return store;
+    }
+
+    /** Local copies of the images saved works embed. */
+    public AssetStore assets() {
+        return assets;
+    }
+
+    public Path pathOf(LibraryEntry entry) {
+        return directory.resolve(entry.fileName());
+    }
+
+    /** Snapshot of all entries, sorted by title. */
+    public synchronized List<LibraryEntry> entries() {
+        List<LibraryEntry> list = new ArrayList<>(entries.values());
+        list.sort(Comparator.comparing(LibraryEntry::title, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)));
+        return list;
+    }
+
+    public synchronized LibraryEntry get(String fileName) {
+        return entries.get(fileName);
+    }
+
+    /** Listeners run on the thread that changed the catalog. */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /** Adds or replaces an entry and appends it to the log. */
+    public void put(LibraryEntry entry) throws IOException {
+        synchronized (this) {
+            append(encodePut(entry));
+            entries.put(entry.fileName(), entry);
+        }
+        fireChanged();
+    }
+
+    /** Removes an entry (the file itself is not touched) and appends a DEL record. */
+    public void remove(String fileName) throws IOException {
+        synchronized (this) {
+            if (!entries.containsKey(fileName)) return;
+            append("DEL\t" + escape(fileName));
+            entries.remove(fileName);
+        }
+        fireChanged();
+    }
+
+    /**
+     * Saves a work into the store as "Title - Author.ao3work" and records it. An older copy of the
+     * same work saved as plain HTML is superseded and deleted.
+     */
+    public LibraryEntry saveWork(String title, String author, String url, StoryContent story) throws IOException {
+        return saveWork(title, author, url, story, null);
+    }
+
+    /** Like {@link #saveWork(String, String, String, StoryContent)}, recording AO3's update date when known. */
+    public LibraryEntry saveWork(String title, String author, String url, StoryContent story, String updated) throws IOException {
+        String baseName = title.replaceAll("[\\\\/:*?\"<>|]", "_") + " - " + author;
+        return save(baseName, title, author, url, story, updated);
+    }
+
+    /** Replaces a saved work with a newer version under the same name; unchanged chapters are not rewritten. */
+    public LibraryEntry updateWork(LibraryEntry old, StoryContent story, String updated) throws IOException {
+        String baseName = old.fileName().replaceFirst("\\.(html|txt|ao3work)$", "");
+        LibraryEntry entry = save(baseName, old.title(), old.author(), old.url(), story, updated);
+        if (!entry.fileName().equals(old.fileName()) && Files.deleteIfExists(pathOf(old))) remove(old.fileName());
+        return entry;
+    }
+
+    private LibraryEntry save(String baseName, String title, String author, String url, StoryContent story, String updated) throws IOException {
+        WorkStore.SavedWork saved = store.save(baseName, story);
+        LibraryEntry entry = describe(baseName + WorkStore.EXTENSION, title, author, url, story, saved).withUpdated(updated);
+        put(entry);
+        if (Files.deleteIfExists(directory.resolve(baseName + ".html"))) remove(baseName + ".html");
+        return entry;
+    }
+
+    /** A saved work's content; stored works load their chapters lazily. */
+    public StoryContent openStory(LibraryEntry entry) throws IOException {
+        if (entry.fileName().endsWith(WorkStore.EXTENSION)) return store.open(pathOf(entry));
+        return StoryContent.fromFile(LibraryIO.readString(pathOf(entry)));
+    }
+
+    /** The saved copy of the work at {@code url}, or null. */
+    public synchronized LibraryEntry findByUrl(String url) {
+        for (LibraryEntry entry : entries.values()) {
+            if (url.equals(entry.url())) return entry;
+        }
+        return null;
+    }
+
+    /** Plain text of a saved work (markup stripped), e.g. for the full-text index. */
+    public String readText(LibraryEntry entry) throws IOException {
+        if (entry.fileName().endsWith(WorkStore.EXTENSION)) return textOf(store.open(pathOf(entry)));
+        String content = LibraryIO.readString(pathOf(entry));
+        return entry.fileName().endsWith(".html") ? Jsoup.parse(content).text() : content;
+    }
+
+    /** Builds an entry for a work file from its bytes: size, hash and word count are derived here. */
+    public static LibraryEntry describe(String fileName, String title, String author, String url, byte[] content) {
+        String text = Jsoup.parse(new String(content, StandardCharsets.UTF_8)).text();
+        return new LibraryEntry(fileName, title, author, url, countWords(text), content.length,
+                System.currentTimeMillis(), sha256(content), 0, null);
+    }
+
+    /** Builds an entry for a work just written to the store; the size is what the work occupies compressed. */
+    public static LibraryEntry describe(String fileName, String title, String author, String url,
+                                        StoryContent story, WorkStore.SavedWork saved) {
+        return new LibraryEntry(fileName, title, author, url, countWords(textOf(story)), saved.storedBytes(),
+                System.currentTimeMillis(), saved.contentHash(), story.chapterCount(), null);
+    }
+
+    /** The work files in the library directory and their sizes. Only reads, so it can run beside other reads. */
+    public Map<String, Long> scan() throws IOException {
+        Map<String, Long> onDisk = new HashMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                try {
+                    if (name.endsWith(".html") || name.endsWith(".txt") || name.endsWith(WorkStore.EXTENSION)) {
+                        onDisk.put(name, Files.size(p));
+                    }
+                } catch (NoSuchFileException e) {
+                    // Deleted while we were listing
+                }
+            }
+        }
+        return onDisk;
+    }
+
+    /**
+     * Brings the catalog in line with a {@link #scan()}: new works are described and added, entries whose
+     * file is gone are removed and legacy .html files are moved into the store. This writes, so it belongs
+     * on the library's write queue; an entry missing from the scan is only removed if its file is still
+     * gone, since a save queued before this one may have written it after the scan.
+     */
+    public void reconcile(Map<String, Long> onDisk) throws IOException {
+        List<String> missing = new ArrayList<>();
+        synchronized (this) {
+            for (String name : entries.keySet()) if (!onDisk.containsKey(name)) missing.add(name);
+        }
+        for (String name : missing) {
+            if (!Files.exists(directory.resolve(name))) remove(name);
+        }
+
+        for (Map.Entry<String, Long> file : onDisk.entrySet()) {
+            String name = file.getKey();
+            LibraryEntry known = get(name);
+            try {
+                if (name.endsWith(WorkStore.EXTENSION)) {
+                    // Entry sizes are the stored size, not the manifest's, so only unknown works are described
+                    if (known == null) addStoredWork(name, null);
+                } else if (name.endsWith(".html")) {
+                    migrateToStore(name, known);
+                } else if (known == null || known.sizeBytes() != file.getValue()) {
+                    byte[] content = Files.readAllBytes(directory.resolve(name));
+                    String[] titleAndAuthor = titleAndAuthorOf(name);
+                    String url = known != null ? known.url() : null;
+                    put(describe(name, titleAndAuthor[0], titleAndAuthor[1], url, content));
+                }
+            } catch (NoSuchFileException e) {
+                // Deleted while we were scanning; the next reconcile drops it
+            }
+        }
+        compactIfWasteful();
+    }
+
+    // --- Store ---
+    private void addStoredWork(String fileName, String url) throws IOException {
+        Path manifest = directory.resolve(fileName);
+        String[] titleAndAuthor = titleAndAuthorOf(fileName);
+        put(describe(fileName, titleAndAuthor[0], titleAndAuthor[1], url, store.open(manifest), store.describe(manifest)));
+    }
+
+    /** Re-saves a legacy "Title - Author.html" through the store and drops the old file. */
+    private void migrateToStore(String fileName, LibraryEntry known) throws IOException {
+        long started = System.nanoTime();
+        Path legacy = directory.resolve(fileName);
+        StoryContent story = StoryContent.fromHtml(LibraryIO.readString(legacy));
+        String baseName = fileName.substring(0, fileName.length() - ".html".length());
+        WorkStore.SavedWork saved = store.save(baseName, story);
+        String[] titleAndAuthor = titleAndAuthorOf(fileName);
+        String title = known != null ? known.title() : titleAndAuthor[0];
+        String author = known != null ? known.author() : titleAndAuthor[1];
+        String url = known != null ? known.url() : null;
+        put(describe(saved.manifest().getFileName().toString(), title, author, url, story, saved));
+        remove(fileName);
+        Files.delete(legacy);
+        Metrics.shared().record(Metrics.LIBRARY_MIGRATE, System.nanoTime() - started, saved.storedBytes());
+    }
+
+    // --- Log handling ---
+    private synchronized void load() throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(catalogFile, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        for (String line : lines) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split("\t", -1);
+            recordCount++;
+            try {
+                if (fields[0].equals("PUT")) {
+                    LibraryEntry entry = decodePut(fields);
+                    entries.put(entry.fileName(), entry);
+                } else if (fields[0].equals("DEL")) {
+                    entries.remove(unescape(fields[1]));
+                }
+            } catch (RuntimeException e) {
+                // A torn last line from a crash mid-append; everything before it is still good
+                System.err.println("Warning: Skipping damaged catalog record: " + e.getMessage());
+            }
+        }
+    }
+
+    private void append(String record) throws IOException {
+        boolean fresh = !Files.exists(catalogFile);
+        try (BufferedWriter out = Files.newBufferedWriter(catalogFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (fresh) out.write(HEADER + "\n");
+            out.write(record);
+            out.write('\n');
+        }
+        recordCount++;
+    }
+
+    /** Rewrites the log with only the live entries once dead records outnumber them. */
+    private synchronized void compactIfWasteful() throws IOException {
+        if (recordCount < 64 || recordCount < 2 * entries.size()) return;
+        StringBuilder log = new StringBuilder(HEADER).append('\n');
+        for (LibraryEntry entry : entries.values()) log.append(encodePut(entry)).append('\n');
+        LibraryIO.writeAtomically(catalogFile, log.toString().getBytes(StandardCharsets.UTF_8));
+        recordCount = entries.size();
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : listeners) listener.run();
+    }
+
+    // --- Record encoding ---
+    private static String encodePut(LibraryEntry e) {
+        return String.join("\t", "PUT", escape(e.fileName()), escape(e.title()), escape(e.author()),
+                escape(e.url()), Integer.toString(e.wordCount()), Long.toString(e.sizeBytes()),
+                Long.toString(e.savedAt()), escape(e.contentHash()), Integer.toString(e.chapters()), escape(e.updated()));
+    }
+
+    /** Fields are only ever appended, so records written by older versions still decode. */
+    private static LibraryEntry decodePut(String[] f) {
+        return new LibraryEntry(unescape(f[1]), unescape(f[2]), unescape(f[3]), unescape(f[4]),
+                Integer.parseInt(f[5]), Long.parseLong(f[6]), Long.parseLong(f[7]), unescape(f[8]),
+                f.length > 9 ? Integer.parseInt(f[9]) : 0, f.length > 10 ? unescape(f[10]) : null);
+    }
+
+    /** Null is written as an empty field; tabs, newlines and backslashes are backslash-escaped. */
+    private static String escape(String s) {
+        if (s == null) return "";
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String s) {
+        if (s.isEmpty()) return null;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 == s.length()) {
+                sb.append(c);
+                continue;
+            }
+            char next = s.charAt(++i);
+            sb.append(switch (next) {
+                case 't' -> '\t';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                default -> next;
+            });
+        }
+        return sb.toString();
+    }
+
+    // --- Helpers ---
+    /** Works are saved as "Title - Author.ao3work" (formerly .html); anything else is treated as a bare title. */
+    private static String[] titleAndAuthorOf(String fileName) {
+        String base = fileName.replaceFirst("\\.(html|txt|ao3work)$", "");
+        int dash = base.lastIndexOf(" - ");
+        if (dash < 0) return new String[]{base, null};
+        return new String[]{base.substring(0, dash), base.substring(dash + 3)};
+    }
+
+    /** Plain text of a work, parsed one chapter at a time. */
+    private static String textOf(StoryContent story) {
+        StringBuilder sb = new StringBuilder(Jsoup.parse(story.preface()).text());
+        for (int i = 0; i < story.chapterCount(); i++) sb.append('\n').append(Jsoup.parse(story.rawChapter(i)).text());
+        return sb.append('\n').append(Jsoup.parse(story.afterword()).text()).toString();
+    }
+
+    private static int countWords(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean letter = !Character.isWhitespace(text.charAt(i));
+            if (letter && !inWord) words++;
+            inWord = letter;
+        }
+        return words;
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
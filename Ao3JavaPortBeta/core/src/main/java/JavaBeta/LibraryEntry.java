@@ -0,0 +1,26 @@
+package JavaBeta;
+
+/**
+ * Catalog record for one saved work in the offline library.
+ *
+ * @param fileName    file name inside the library directory; unique, used as the key
+ * @param savedAt     epoch millis when the file was written
+ * @param contentHash SHA-256 of the file bytes, hex encoded
+ * @param chapters    chapters saved, or 0 if not known (entries recorded before this was tracked)
+ * @param updated     AO3's last update date of the saved copy (yyyy-MM-dd), or null until first checked
+ */
+public record LibraryEntry(String fileName, String title, String author, String url,
+                           int wordCount, long sizeBytes, long savedAt, String contentHash,
+                           int chapters, String updated) {
+
+    /** The same entry with the update date AO3 reported for it. */
+    public LibraryEntry withUpdated(String updated) {
+        return new LibraryEntry(fileName, title, author, url, wordCount, sizeBytes, savedAt, contentHash, chapters, updated);
+    }
+
+    // This controls how the entry looks in the ListView
+    @Override
+    public String toString() {
+        return author == null || author.isEmpty() ? title : title + " by " + author;
+    }
+}
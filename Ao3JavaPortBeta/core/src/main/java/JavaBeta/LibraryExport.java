@@ -0,0 +1,100 @@
+package JavaBeta;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Exports saved works to a folder in one of the {@link WorkExporter} formats.
+ * <p>
+ * A batch is split in halves on a fork-join pool sized to the CPU count, so idle workers steal
+ * from busy ones and a few very long works don't leave the rest of the pool waiting. Every file is
+ * streamed to disk as it is produced and then renamed into place, so neither a whole work nor a
+ * whole book is held in memory and an interrupted export leaves no half-written files behind.
+ */
+public final class LibraryExport {
+
+    /** {@code failures} holds one "title: reason" line per work that could not be exported. */
+    public record Result(int exported, List<String> failures) {
+    }
+
+    private final LibraryCatalog catalog;
+    private final WorkExporter exporter;
+    private final Path targetDirectory;
+
+    public LibraryExport(LibraryCatalog catalog, WorkExporter exporter, Path targetDirectory) {
+        this.catalog = catalog;
+        this.exporter = exporter;
+        this.targetDirectory = targetDirectory;
+    }
+
+    /** The file a work is exported to: its library name with the exporter's extension. */
+    public Path targetOf(LibraryEntry entry) {
+        return targetDirectory.resolve(fileNameFor(entry, exporter));
+    }
+
+    public static String fileNameFor(LibraryEntry entry, WorkExporter exporter) {
+        return entry.fileName().replaceFirst("\\.(html|txt|ao3work)$", "") + exporter.extension();
+    }
+
+    /** Exports one work to {@code file}. */
+    public void exportWork(LibraryEntry entry, Path file) throws IOException {
+        StoryContent story = catalog.openStory(entry);
+        LibraryIO.writeAtomically(file, out -> exporter.export(entry, story, out));
+    }
+
+    /**
+     * Exports {@code entries} into the target folder, blocking until all are done. {@code onProgress}
+     * is called from the worker threads with the number of works finished so far; once
+     * {@code cancelled} returns true, works not yet started are skipped.
+     */
+    public Result exportAll(List<LibraryEntry> entries, IntConsumer onProgress, BooleanSupplier cancelled) throws IOException {
+        Files.createDirectories(targetDirectory);
+        AtomicInteger exported = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        class Batch extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final int from, to;
+
+            Batch(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > 1) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new Batch(from, middle), new Batch(middle, to));
+                    return;
+                }
+                if (from == to || cancelled.getAsBoolean()) return;
+                LibraryEntry entry = entries.get(from);
+                try {
+                    exportWork(entry, targetOf(entry));
+                    exported.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Warning: Could not export '" + entry.fileName() + "': " + e.getMessage());
+                    failures.add(entry.title() + ": " + e.getMessage());
+                }
+                onProgress.accept(finished.incrementAndGet());
+            }
+        }
+
+        try (ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors())) {
+            pool.invoke(new Batch(0, entries.size()));
+        }
+        return new Result(exported.get(), List.copyOf(failures));
+    }
+}
@@ -0,0 +1,182 @@
+package JavaBeta;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where library disk access runs, so the JavaFX thread never waits on the disk.
+ * <p>
+ * Reads run in parallel on virtual threads. Writes go through one queue and run in submission
+ * order, so saving a work and then deleting it can't overtake each other; the UI only enqueues
+ * them. The JavaFX app takes results back on its own thread with {@code FxFutures.onFxThread}.
+ * <p>
+ * The static helpers are the primitives the library uses underneath: large files are read through
+ * a memory map rather than copied into a byte array first, and every file write is atomic (written
+ * to a temp file, forced to disk, then renamed over the target), so a crash leaves either the old
+ * or the new version of a work, never half of one.
+ */
+public final class LibraryIO {
+
+    /** A piece of disk work. */
+    @FunctionalInterface
+    public interface IoCall<T> {
+        T call() throws IOException;
+    }
+
+    /** Produces a file's content into a stream, e.g. one entry at a time. */
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static final long MAP_THRESHOLD_BYTES = 1024 * 1024;
+    private static final LibraryIO SHARED = new LibraryIO();
+
+    private final ExecutorService reads = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("library-read-", 0).factory());
+    private final ExecutorService writes = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("library-write").factory());
+
+    private LibraryIO() {
+    }
+
+    public static LibraryIO shared() {
+        return SHARED;
+    }
+
+    /** Runs {@code call} in the background. */
+    public <T> CompletableFuture<T> read(IoCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> run(call), reads);
+    }
+
+    /** Queues {@code call} behind every write submitted before it. */
+    public <T> CompletableFuture<T> write(IoCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> run(call), writes);
+    }
+
+    /** Lets queued writes finish, e.g. when the app quits right after a download. */
+    public void shutdown() {
+        writes.shutdown();
+        try {
+            if (!writes.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("Warning: Library writes still pending at exit");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Waits for a future from {@link #read} or {@link #write}, e.g. on a worker thread, and rethrows its I/O error. */
+    public static <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw failureOf(e.getCause());
+        }
+    }
+
+    /** The I/O error behind a failed future from {@link #read} or {@link #write}, unwrapped. */
+    public static IOException failureOf(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof UncheckedIOException unchecked) cause = unchecked.getCause();
+        return cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+    }
+
+    private static <T> T run(IoCall<T> call) {
+        try {
+            return call.call();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // --- Primitives ---
+    /** Reads a UTF-8 file; files over a megabyte are decoded straight from a read-only mapping. */
+    public static String readString(Path file) throws IOException {
+        Ao3Events.LibraryIo event = new Ao3Events.LibraryIo();
+        event.begin();
+        long started = System.nanoTime();
+        String text;
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size < MAP_THRESHOLD_BYTES) {
+                text = Files.readString(file, StandardCharsets.UTF_8);
+            } else {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                text = StandardCharsets.UTF_8.decode(mapped).toString();
+            }
+        }
+        recordIo(event, Metrics.LIBRARY_READ, file, size, started);
+        return text;
+    }
+
+    /** Replaces {@code file} with {@code content} so that readers (and crashes) see all of it or none. */
+    public static void writeAtomically(Path file, byte[] content) throws IOException {
+        Ao3Events.LibraryIo event = new Ao3Events.LibraryIo();
+        event.begin();
+        long started = System.nanoTime();
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) out.write(buffer);
+                out.force(true); // Otherwise the rename can reach the disk before the data does
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        recordIo(event, Metrics.LIBRARY_WRITE, file, content.length, started);
+    }
+
+    /** Like {@link #writeAtomically(Path, byte[])}, for content streamed to disk as it is produced. */
+    public static void writeAtomically(Path file, Content content) throws IOException {
+        Ao3Events.LibraryIo event = new Ao3Events.LibraryIo();
+        event.begin();
+        long started = System.nanoTime();
+        long size;
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+                content.writeTo(out);
+                out.flush(); // Not closed: that would close the channel before it is forced
+                channel.force(true);
+                size = channel.size();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        recordIo(event, Metrics.LIBRARY_WRITE, file, size, started);
+    }
+
+    /** Adds a finished read or write of {@code file} to {@link Metrics} and commits its JFR event. */
+    static void recordIo(Ao3Events.LibraryIo event, String stage, Path file, long bytes, long started) {
+        Metrics.shared().record(stage, System.nanoTime() - started, bytes);
+        if (event.shouldCommit()) {
+            event.operation = stage;
+            event.file = file.toString();
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+}
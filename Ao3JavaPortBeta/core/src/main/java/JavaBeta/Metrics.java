@@ -0,0 +1,170 @@
+package JavaBeta;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process timers for the app's hot paths, so a slow stage can be found on a given machine and
+ * work without attaching a profiler. Every stage also emits a JFR event (see {@link Ao3Events}).
+ * <p>
+ * A timer keeps a count, the total and maximum, a histogram for percentiles (log-scale buckets, so
+ * percentiles are accurate to about 10%) and, for stages that move data, the bytes moved. Recording
+ * is lock-free and cheap enough to leave on everywhere.
+ */
+public final class Metrics {
+
+    // --- Stages ---
+    /** Waiting for the rate limiter and a connection slot. */
+    public static final String FETCH_WAIT = "fetch.wait";
+    /**
+     * Request sent to response headers received: DNS, connect, TLS and server time together, since
+     * {@code java.net.http} doesn't report them separately.
+     */
+    public static final String FETCH_TTFB = "fetch.ttfb";
+    /** Time the parser spent blocked on the network while the body arrived; bytes are the decoded body. */
+    public static final String FETCH_DOWNLOAD = "fetch.download";
+    /** A page parsed by Jsoup, not counting time blocked on the network. */
+    public static final String PARSE_JSOUP = "parse.jsoup";
+    /** A work page streamed through {@link StoryExtractor}, not counting time blocked on the network. */
+    public static final String PARSE_WORKSKIN = "parse.workskin";
+    /** Filling in the reader page template. */
+    public static final String RENDER_TEMPLATE = "render.template";
+    /** From handing the reader page to the WebView to the first layout after it loaded. */
+    public static final String RENDER_LOAD = "render.load";
+    /** A work fetched and extracted ahead of time by {@link Prefetcher}; bytes are what was downloaded. */
+    public static final String PREFETCH = "prefetch";
+    public static final String LIBRARY_READ = "library.read";
+    public static final String LIBRARY_WRITE = "library.write";
+    /** A legacy .html work moved into the {@link WorkStore}; bytes are what it takes there. */
+    public static final String LIBRARY_MIGRATE = "library.migrate";
+
+    private static final Metrics SHARED = new Metrics();
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static Metrics shared() {
+        return SHARED;
+    }
+
+    /** One timer's figures at the time of {@link #snapshot()}. Times are in nanoseconds. */
+    public record Stat(String name, long count, long totalNanos, long p50Nanos, long p95Nanos, long maxNanos, long bytes) {
+
+        public double meanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+    }
+
+    /** Adds one measurement of {@code nanos} to the {@code stage} timer. */
+    public void record(String stage, long nanos) {
+        record(stage, nanos, 0);
+    }
+
+    /** Like {@link #record(String, long)}, also counting {@code bytes} moved. */
+    public void record(String stage, long nanos, long bytes) {
+        timers.computeIfAbsent(stage, name -> new Timer()).add(Math.max(0, nanos), bytes);
+    }
+
+    /** Every timer recorded to so far, by name. */
+    public List<Stat> snapshot() {
+        List<Stat> stats = new ArrayList<>();
+        timers.forEach((name, timer) -> stats.add(timer.stat(name)));
+        stats.sort((a, b) -> a.name().compareTo(b.name()));
+        return stats;
+    }
+
+    /** Clears every timer, e.g. before measuring one work. */
+    public void reset() {
+        timers.clear();
+    }
+
+    /** A plain-text table of {@link #snapshot()}. */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# AO3 reader metrics, ").append(Instant.now()).append('\n');
+        sb.append(String.format(Locale.ROOT, "%-16s %8s %10s %10s %10s %10s %12s%n",
+                "stage", "count", "mean ms", "p50 ms", "p95 ms", "max ms", "bytes"));
+        for (Stat s : snapshot()) {
+            sb.append(String.format(Locale.ROOT, "%-16s %8d %10.2f %10.2f %10.2f %10.2f %12d%n",
+                    s.name(), s.count(), s.meanMillis(), s.p50Nanos() / 1e6, s.p95Nanos() / 1e6, s.maxNanos() / 1e6, s.bytes()));
+        }
+        return sb.toString();
+    }
+
+    /** Where dumps go unless told otherwise: {@code -Dao3.metricsFile}, else {@code ao3-metrics.txt} in the home folder. */
+    public static Path defaultDumpFile() {
+        String configured = System.getProperty("ao3.metricsFile");
+        return configured != null ? Path.of(configured) : Path.of(System.getProperty("user.home"), "ao3-metrics.txt");
+    }
+
+    /** Writes {@link #report()} to {@code file}. */
+    public void dump(Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        LibraryIO.writeAtomically(target, report().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Bucket {@code i} covers values whose highest bit is {@code i / SUB_BUCKETS}, split into
+     * {@code SUB_BUCKETS} equal parts by the bits below it.
+     */
+    private static final class Timer {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+
+        void add(long nanos, long moved) {
+            count.increment();
+            total.add(nanos);
+            if (moved > 0) bytes.add(moved);
+            max.accumulateAndGet(nanos, Math::max);
+            buckets.incrementAndGet(bucketOf(nanos));
+        }
+
+        Stat stat(String name) {
+            long n = count.sum();
+            return new Stat(name, n, total.sum(), percentile(n, 0.50), percentile(n, 0.95), max.get(), bytes.sum());
+        }
+
+        private long percentile(long n, double p) {
+            long rank = (long) Math.ceil(n * p);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) return Math.min(middleOf(i), max.get());
+            }
+            return max.get();
+        }
+
+        private static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int high = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (high - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (high - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long middleOf(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int high = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            long low = (1L << high) | (sub << (high - SUB_BITS));
+            return low + (1L << (high - SUB_BITS)) / 2;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package JavaBeta;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.Set;
+
+/**
+ * Converts between work markup and plain text.
+ * <p>
+ * Text comes out reflowed: paragraphs are separated by a blank line and wrapped at a fixed width,
+ * block quotes and list items are indented, scene breaks become {@code * * *}. Going the other way,
+ * paragraphs are found by blank lines (or by line breaks in text that has no blank lines, like most
+ * hand-made .txt files), and the text is escaped before it is wrapped in {@code <p>} tags.
+ */
+public final class PlainText {
+
+    public static final int DEFAULT_WIDTH = 72;
+
+    private static final Set<String> BLOCKS = Set.of("p", "div", "section", "blockquote", "ul", "ol", "li",
+            "h1", "h2", "h3", "h4", "h5", "h6", "dl", "dt", "dd", "table", "tr", "pre", "center", "hr");
+    private static final Set<String> INDENTING = Set.of("blockquote", "li", "dd");
+
+    private PlainText() {
+    }
+
+    /** Markup for a plain text file, one {@code <p>} per paragraph. */
+    public static String toHtml(String text) {
+        String normalized = text.replace("\r\n", "\n").replace('\r', '\n').strip();
+        boolean blankLines = normalized.contains("\n\n");
+        StringBuilder html = new StringBuilder(normalized.length() + normalized.length() / 8);
+        for (String paragraph : normalized.split(blankLines ? "\n\\s*\n" : "\n")) {
+            String joined = paragraph.strip().replaceAll("\\s*\n\\s*", " ");
+            if (joined.isEmpty()) continue;
+            html.append("<p>").append(escape(joined)).append("</p>\n");
+        }
+        return html.toString();
+    }
+
+    /** Reflowed text of an HTML fragment, wrapped at {@code width} columns. */
+    public static String fromHtml(String html, int width) {
+        Writer writer = new Writer(width);
+        NodeTraversor.traverse(writer, Jsoup.parseBodyFragment(html).body());
+        writer.endParagraph();
+        return writer.out.toString();
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /** Collects the words of each paragraph and wraps them when the paragraph ends. */
+    private static final class Writer implements NodeVisitor {
+        final StringBuilder out = new StringBuilder();
+        final StringBuilder paragraph = new StringBuilder();
+        final int width;
+        int indent = 0;
+        int paragraphIndent = 0; // Indent when the paragraph's first text arrived
+        boolean started = false;
+        boolean bullet = false;  // A list item began; its first line gets the dash
+
+        Writer(int width) {
+            this.width = width;
+        }
+
+        @Override
+        public void head(Node node, int depth) {
+            if (node instanceof TextNode text) {
+                if (!started && !text.isBlank()) {
+                    started = true;
+                    paragraphIndent = indent;
+                }
+                paragraph.append(text.getWholeText().replace('\u00a0', ' '));
+            } else if (node instanceof Element el) {
+                String name = el.normalName();
+                if (name.equals("br")) {
+                    paragraph.append('\n');
+                } else if (BLOCKS.contains(name)) {
+                    endParagraph();
+                    if (name.equals("hr")) appendLine(" ".repeat(Math.max(0, (width - 5) / 2)) + "* * *");
+                    if (INDENTING.contains(name)) indent += 4;
+                    if (name.equals("li")) bullet = true;
+                }
+            }
+        }
+
+        @Override
+        public void tail(Node node, int depth) {
+            if (node instanceof Element el && BLOCKS.contains(el.normalName())) {
+                endParagraph();
+                if (INDENTING.contains(el.normalName())) indent -= 4;
+            }
+        }
+
+        void endParagraph() {
+            // Line breaks inside a paragraph (poetry, letters) are kept; everything else is refilled
+            String[] lines = paragraph.toString().split("\n");
+            paragraph.setLength(0);
+            started = false;
+            StringBuilder block = new StringBuilder();
+            for (String line : lines) {
+                String words = line.strip().replaceAll("\\s+", " ");
+                if (!words.isEmpty()) wrap(words, paragraphIndent, block);
+            }
+            if (!block.isEmpty()) appendLine(block.substring(0, block.length() - 1));
+        }
+
+        void wrap(String words, int indent, StringBuilder block) {
+            String pad = " ".repeat(indent);
+            int lineStart = block.length();
+            if (bullet && indent >= 2) {
+                block.append(pad, 0, indent - 2).append("- "); // The dash hangs in the indent
+                bullet = false;
+            } else {
+                block.append(pad);
+            }
+            for (String word : words.split(" ")) {
+                int lineLength = block.length() - lineStart;
+                if (lineLength > indent && lineLength + 1 + word.length() > width) {
+                    block.append('\n');
+                    lineStart = block.length();
+                    block.append(pad);
+                } else if (lineLength > indent) {
+                    block.append(' ');
+                }
+                block.append(word);
+            }
+            block.append('\n');
+        }
+
+        void appendLine(String text) {
+            if (!out.isEmpty()) out.append('\n');
+            out.append(text).append('\n');
+        }
+    }
+}
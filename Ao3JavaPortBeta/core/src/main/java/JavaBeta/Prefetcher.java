@@ -0,0 +1,227 @@
+package JavaBeta;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches and extracts works the user is likely to open next, while nothing else needs the network.
+ * <p>
+ * The caller says which works it wants, most likely first ({@link #want}); they are fetched in that
+ * order through {@link Ao3Client#speculative}, so a cached page costs no traffic. Prefetching waits
+ * until no other request has gone out for a moment, and any request that does go out cancels the
+ * running prefetches at once, freeing their connection permits. A {@link Budget} caps how many run
+ * together, the download rate, and the memory the extracted works may take. Once a work is ready,
+ * {@link #claim} hands it over without touching the network.
+ */
+public final class Prefetcher {
+
+    /**
+     * What prefetching may use. {@code maxConcurrent} 0 turns it off; {@code bytesPerSecond} is an
+     * average over the works fetched; {@code maxBytes} bounds the extracted works held for claiming.
+     */
+    public record Budget(int maxConcurrent, long bytesPerSecond, long maxBytes) {
+
+        public Budget {
+            if (maxConcurrent < 0 || bytesPerSecond <= 0 || maxBytes < 0) {
+                throw new IllegalArgumentException("Invalid prefetch budget: " + maxConcurrent + ", " + bytesPerSecond + ", " + maxBytes);
+            }
+        }
+
+        /** From {@code -Dao3.prefetch.concurrency}, {@code .bytesPerSecond} and {@code .maxBytes}. */
+        public static Budget fromSystemProperties() {
+            return new Budget(Integer.getInteger("ao3.prefetch.concurrency", 1),
+                    Long.getLong("ao3.prefetch.bytesPerSecond", 512 * 1024),
+                    Long.getLong("ao3.prefetch.maxBytes", 32L * 1024 * 1024));
+        }
+    }
+
+    // No prefetch starts until foreground requests have been quiet this long
+    private static final Duration IDLE_QUIET = Duration.ofMillis(1500);
+    private static final int MAX_REMEMBERED_FAILURES = 256;
+
+    private static final Prefetcher SHARED = new Prefetcher(Budget.fromSystemProperties());
+
+    /** A prefetch on the wire. Claimed ones are no longer speculative and aren't cancelled. */
+    private static final class Job {
+        final CompletableFuture<StoryExtractor.Extracted> result = new CompletableFuture<>();
+        Thread thread;
+        boolean claimed;
+        boolean cancelled;
+    }
+
+    private record Ready(StoryExtractor.Extracted work, long bytes) {
+    }
+
+    // All guarded by this
+    private Budget budget;
+    private List<String> wanted = List.of();
+    private final Map<String, Job> running = new HashMap<>();
+    private final LinkedHashMap<String, Ready> ready = new LinkedHashMap<>(16, 0.75f, true); // Least recently used first
+    private long readyBytes = 0;
+    private final Set<String> failed = new HashSet<>(); // e.g. restricted works; not tried again
+    private long nextStart = System.nanoTime(); // Paces starts to the bandwidth budget
+    private boolean retryQueued = false;
+
+    private Prefetcher(Budget budget) {
+        this.budget = budget;
+        Ao3Client.get().onForegroundRequest(this::cancelSpeculative);
+    }
+
+    public static Prefetcher shared() {
+        return SHARED;
+    }
+
+    public synchronized Budget budget() {
+        return budget;
+    }
+
+    public void setBudget(Budget budget) {
+        synchronized (this) {
+            this.budget = budget;
+            if (budget.maxConcurrent() == 0) wanted = List.of();
+            evictOverBudget();
+        }
+        cancelUnwanted();
+        schedule();
+    }
+
+    /**
+     * Replaces the works to prefetch, given by work URL, most likely first. Running prefetches of works
+     * no longer on the list are cancelled; works already fetched stay ready until memory runs short.
+     */
+    public void want(List<String> workUrls) {
+        synchronized (this) {
+            wanted = budget.maxConcurrent() == 0 ? List.of() : List.copyOf(workUrls);
+        }
+        cancelUnwanted();
+        schedule();
+    }
+
+    /**
+     * The prefetched work at {@code workUrl}: done if it is ready, still running if it is on its way
+     * (it then finishes even if other requests go out), or null if it has to be fetched normally.
+     */
+    public synchronized CompletableFuture<StoryExtractor.Extracted> claim(String workUrl) {
+        Ready done = ready.get(workUrl);
+        if (done != null) return CompletableFuture.completedFuture(done.work());
+        Job job = running.get(workUrl);
+        if (job == null || job.cancelled) return null;
+        job.claimed = true;
+        return job.result;
+    }
+
+    /** Starts prefetches while the budget allows, or looks again once it will. */
+    private void schedule() {
+        long wait = 0;
+        synchronized (this) {
+            while (running.size() < budget.maxConcurrent()) {
+                String next = nextWanted();
+                if (next == null) return;
+                wait = Math.max(Ao3Client.get().untilQuiet(IDLE_QUIET).toNanos(), nextStart - System.nanoTime());
+                if (wait > 0) break;
+                start(next);
+            }
+            if (wait <= 0 || retryQueued) return;
+            retryQueued = true;
+        }
+        CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS).execute(() -> {
+            synchronized (this) {
+                retryQueued = false;
+            }
+            schedule();
+        });
+    }
+
+    private String nextWanted() {
+        for (String url : wanted) {
+            if (!ready.containsKey(url) && !running.containsKey(url) && !failed.contains(url)) return url;
+        }
+        return null;
+    }
+
+    private void start(String url) {
+        Job job = new Job();
+        job.thread = Thread.ofVirtual().name("ao3-prefetch").unstarted(() -> {
+            long[] bytes = { 0 };
+            long started = System.nanoTime();
+            try {
+                StoryExtractor.Extracted work = Ao3Client.get().speculative(
+                        () -> WorkFetcher.get().fetch(url, null), size -> bytes[0] += size);
+                Metrics.shared().record(Metrics.PREFETCH, System.nanoTime() - started, bytes[0]);
+                finished(url, job, work, bytes[0], null);
+            } catch (Exception e) {
+                finished(url, job, null, bytes[0], e);
+            }
+        });
+        running.put(url, job);
+        job.thread.start();
+    }
+
+    private void finished(String url, Job job, StoryExtractor.Extracted work, long bytes, Exception error) {
+        synchronized (this) {
+            running.remove(url);
+            nextStart = Math.max(nextStart, System.nanoTime()) + bytes * 1_000_000_000L / budget.bytesPerSecond();
+            if (work != null) {
+                Ready done = new Ready(work, estimateBytes(work.story()));
+                Ready old = ready.put(url, done);
+                readyBytes += done.bytes() - (old == null ? 0 : old.bytes());
+                evictOverBudget();
+            } else if (!job.cancelled) {
+                if (failed.size() >= MAX_REMEMBERED_FAILURES) failed.clear();
+                failed.add(url);
+                System.err.println("Warning: Could not prefetch " + url + ": " + error.getMessage());
+            }
+        }
+        if (work != null) job.result.complete(work);
+        else if (job.cancelled) job.result.completeExceptionally(new CancellationException("Prefetch cancelled"));
+        else job.result.completeExceptionally(error);
+        schedule();
+    }
+
+    /** A foreground request needs the connection: interrupts every prefetch not yet claimed. */
+    private void cancelSpeculative() {
+        synchronized (this) {
+            if (running.isEmpty()) return;
+            for (Job job : running.values()) cancel(job);
+        }
+        schedule(); // Queues the next look for when the network has gone quiet again
+    }
+
+    private void cancelUnwanted() {
+        synchronized (this) {
+            for (Map.Entry<String, Job> entry : running.entrySet()) {
+                if (!wanted.contains(entry.getKey())) cancel(entry.getValue());
+            }
+        }
+    }
+
+    private void cancel(Job job) {
+        if (job.claimed || job.cancelled) return;
+        job.cancelled = true;
+        job.thread.interrupt(); // Ao3Client's blocking sends and body reads stop on interrupt
+    }
+
+    private void evictOverBudget() {
+        Iterator<Ready> oldest = ready.values().iterator();
+        while (readyBytes > budget.maxBytes() && oldest.hasNext()) {
+            readyBytes -= oldest.next().bytes();
+            oldest.remove();
+        }
+    }
+
+    /** Rough heap size of an extracted work: two bytes per character of its markup. */
+    private static long estimateBytes(StoryContent story) {
+        long chars = story.preface().length() + story.afterword().length();
+        for (int i = 0; i < story.chapterCount(); i++) chars += story.rawChapter(i).length();
+        return chars * 2;
+    }
+}
@@ -0,0 +1,184 @@
+package JavaBeta;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Where the reader left off in every work: chapter, position inside it and when it was last read.
+ * <p>
+ * Works are keyed by their AO3 URL, so a work opened from the search results and its saved copy
+ * share one position; library works without a URL use their file name. Positions are kept in
+ * memory and written to {@code .progress} in the library folder as an append-only log (one short
+ * line per work that moved), like the catalog. Updates only touch memory; at most one write is
+ * queued per {@link #SAVE_DELAY_SECONDS}, however fast the reader scrolls.
+ */
+public final class ProgressStore {
+
+    /**
+     * {@code fraction} is how far into {@code chapter} the top of the window is, 0 to 1;
+     * {@code furthestChapter} is the furthest chapter ever reached, even after scrolling back.
+     */
+    public record Position(int chapter, double fraction, int furthestChapter, long readAtMillis) {
+    }
+
+    private static final String FILE_NAME = ".progress";
+    private static final String HEADER = "#AO3PROGRESS 1";
+    private static final int SAVE_DELAY_SECONDS = 2;
+    private static final int FRACTION_SCALE = 10_000; // Stored as an int, to the hundredth of a percent
+
+    private static ProgressStore shared;
+
+    private final Path file;
+    private final Map<String, Position> positions = new HashMap<>(); // guarded by this
+    private final Set<String> unsaved = new LinkedHashSet<>();        // guarded by this
+    private final AtomicBoolean saveQueued = new AtomicBoolean();
+    private int recordCount = 0;                                      // guarded by this
+    private boolean rewriteNeeded = false;                            // guarded by this
+
+    private ProgressStore(Path file) {
+        this.file = file;
+    }
+
+    public static synchronized ProgressStore shared() throws IOException {
+        if (shared == null) shared = open(LibraryCatalog.defaultDirectory().resolve(FILE_NAME));
+        return shared;
+    }
+
+    public static ProgressStore open(Path file) throws IOException {
+        ProgressStore store = new ProgressStore(file);
+        store.load();
+        return store;
+    }
+
+    /** Key for a work from the search results. */
+    public static String keyFor(Work work) {
+        return work.getUrl();
+    }
+
+    /** Key for a saved work; the same as its online copy's when the URL is known. */
+    public static String keyFor(LibraryEntry entry) {
+        return entry.url() != null && !entry.url().isBlank() ? entry.url() : "file:" + entry.fileName();
+    }
+
+    public synchronized Position get(String key) {
+        return positions.get(key);
+    }
+
+    /** Records a position in memory and makes sure a save is on its way. */
+    public void update(String key, int chapter, double fraction) {
+        synchronized (this) {
+            Position old = positions.get(key);
+            int furthest = old == null ? chapter : Math.max(old.furthestChapter(), chapter);
+            positions.put(key, new Position(chapter, Math.max(0, Math.min(1, fraction)), furthest, System.currentTimeMillis()));
+            unsaved.add(key);
+        }
+        if (saveQueued.compareAndSet(false, true)) {
+            CompletableFuture.delayedExecutor(SAVE_DELAY_SECONDS, TimeUnit.SECONDS).execute(this::flush);
+        }
+    }
+
+    /** Queues a write of whatever changed since the last one; e.g. when a reader window closes. */
+    public void flush() {
+        saveQueued.set(false);
+        try {
+            LibraryIO.shared().write(() -> {
+                save();
+                return null;
+            }).exceptionally(e -> {
+                System.err.println("Warning: Could not save reading progress: " + e.getMessage());
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            // The app is quitting; its own flush has already queued the last positions
+        }
+    }
+
+    // --- Log handling ---
+    private synchronized void load() throws IOException {
+        String log;
+        try {
+            log = Files.readString(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        List<String> lines = List.of(log.split("\n"));
+        if (!log.isEmpty() && !log.endsWith("\n")) {
+            // A torn last line from a crash mid-append. Appending after it would glue the next record
+            // onto the fragment, so drop it and have the next save rewrite the log.
+            System.err.println("Warning: Skipping damaged progress record: " + lines.get(lines.size() - 1));
+            lines = lines.subList(0, lines.size() - 1);
+            rewriteNeeded = true;
+        }
+        for (String line : lines) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] f = line.split("\t", -1);
+            recordCount++;
+            try {
+                positions.put(unescape(f[0]), new Position(Integer.parseInt(f[1]),
+                        Integer.parseInt(f[2]) / (double) FRACTION_SCALE, Integer.parseInt(f[3]), Long.parseLong(f[4])));
+            } catch (RuntimeException e) {
+                System.err.println("Warning: Skipping damaged progress record: " + e.getMessage());
+                rewriteNeeded = true;
+            }
+        }
+    }
+
+    private synchronized void save() throws IOException {
+        if (unsaved.isEmpty()) return;
+        boolean mostlyStale = recordCount + unsaved.size() >= 64 && recordCount + unsaved.size() >= 2 * positions.size();
+        if (mostlyStale || rewriteNeeded) {
+            // Rewrite the log with one line per work instead of appending
+            StringBuilder log = new StringBuilder(HEADER).append('\n');
+            for (Map.Entry<String, Position> entry : positions.entrySet()) log.append(encode(entry.getKey(), entry.getValue()));
+            LibraryIO.writeAtomically(file, log.toString().getBytes(StandardCharsets.UTF_8));
+            recordCount = positions.size();
+            rewriteNeeded = false;
+        } else {
+            boolean fresh = !Files.exists(file);
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (fresh) out.write(HEADER + "\n");
+                for (String key : unsaved) out.write(encode(key, positions.get(key)));
+            }
+            recordCount += unsaved.size();
+        }
+        unsaved.clear();
+    }
+
+    private static String encode(String key, Position p) {
+        return escape(key) + '\t' + p.chapter() + '\t' + Math.round(p.fraction() * FRACTION_SCALE)
+                + '\t' + p.furthestChapter() + '\t' + p.readAtMillis() + '\n';
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
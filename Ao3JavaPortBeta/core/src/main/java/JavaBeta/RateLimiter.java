@@ -0,0 +1,48 @@
+package JavaBeta;
+
+import java.time.Duration;
+
+/**
+ * Spaces requests out to a fixed rate, shared by every thread that fetches through it.
+ * <p>
+ * Callers reserve the next free slot and sleep until it comes round, so a burst of workers
+ * queues up behind one another instead of hitting the server together. When AO3 answers with
+ * 429/503, {@link #pauseFor(Duration)} pushes every pending slot back past the Retry-After delay.
+ */
+public final class RateLimiter {
+
+    private long intervalNanos;  // guarded by this
+    private long nextSlot;       // guarded by this; System.nanoTime() of the next free slot
+
+    public RateLimiter(double requestsPerSecond) {
+        setRate(requestsPerSecond);
+        this.nextSlot = System.nanoTime();
+    }
+
+    /** Changes the rate; takes effect from the next reservation. */
+    public synchronized void setRate(double requestsPerSecond) {
+        if (!(requestsPerSecond > 0)) throw new IllegalArgumentException("Rate must be positive: " + requestsPerSecond);
+        this.intervalNanos = (long) (1_000_000_000L / requestsPerSecond);
+    }
+
+    public synchronized double rate() {
+        return 1_000_000_000.0 / intervalNanos;
+    }
+
+    /** Blocks until the caller may send one request. */
+    public void acquire() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(nextSlot, now);
+            nextSlot = slot + intervalNanos;
+            wait = slot - now;
+        }
+        if (wait > 0) Thread.sleep(Duration.ofNanos(wait));
+    }
+
+    /** Holds back every request not yet sent until {@code delay} has passed. */
+    public synchronized void pauseFor(Duration delay) {
+        nextSlot = Math.max(nextSlot, System.nanoTime() + delay.toNanos());
+    }
+}
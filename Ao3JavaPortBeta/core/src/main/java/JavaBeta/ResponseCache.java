@@ -0,0 +1,374 @@
+package JavaBeta;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Two-tier cache for fetched pages, keyed by the full request URL (path plus query string).
+ * <p>
+ * Tier 1 is an in-memory LRU bounded by total body size. Tier 2 is a gzip-compressed file per entry
+ * in {@code ~/AO3_Cache}, next to the offline library. Responses off the network are compressed into
+ * tier 2 as they arrive (see {@link #download}) and only reach tier 1 when they are looked up again. Each entry remembers when it was fetched and
+ * the ETag / Last-Modified validators the server sent, so {@link Ao3Client} can serve fresh entries
+ * without touching the network and revalidate stale ones with a conditional request.
+ */
+public final class ResponseCache {
+
+    private static final int FILE_MAGIC = 0x414F3344; // "AO3D"; "AO3C" files, which stored the body length, are ignored
+    private static final long MEMORY_LIMIT_BYTES = 32L * 1024 * 1024;
+    private static final long DISK_LIMIT_BYTES = 512L * 1024 * 1024;
+    private static final long DISK_TRIM_TO_BYTES = DISK_LIMIT_BYTES / 10 * 9; // Room for a while before the next trim
+    // A .tmp this old belongs to a download that died with its process; a live one is written to as it arrives
+    private static final long STALE_TEMP_MILLIS = Duration.ofHours(1).toMillis();
+
+    private final Path directory;
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true); // guarded by this
+    private long memoryBytes = 0;                                                           // guarded by this
+    // Disk tier size as of the last trim plus everything written since; replaced entries count twice until then
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final Object trimLock = new Object(); // One trim at a time, without holding up the memory tier
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder bytesFromCache = new LongAdder();
+    private final LongAdder bytesFromNetwork = new LongAdder();
+
+    public ResponseCache(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not create cache directory " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /** Default location: {@code ~/AO3_Cache}, alongside {@code ~/AO3_Offline_Library}; {@code -Dao3.cacheDir} moves it, e.g. for benchmarks. */
+    public static Path defaultDirectory() {
+        String override = System.getProperty("ao3.cacheDir");
+        return override != null ? Path.of(override) : Path.of(System.getProperty("user.home"), "AO3_Cache");
+    }
+
+    /** Returns the cached entry for {@code key} from memory, then disk, or null when neither has it. */
+    public Entry lookup(String key) {
+        synchronized (this) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                memoryHits.increment();
+                return entry;
+            }
+        }
+        Entry entry = readFromDisk(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        diskHits.increment();
+        putInMemory(key, entry);
+        return entry;
+    }
+
+    /**
+     * Starts storing a response that is coming off the network. Its body is compressed into the disk tier
+     * as it is written, so it is never held in memory whole; it replaces any cached copy once
+     * {@link Download#commit()} is called, and is dropped if the download is closed without that.
+     */
+    public Download download(String key, String charset, String etag, String lastModified) {
+        return new Download(key, charset, etag, lastModified, System.currentTimeMillis());
+    }
+
+    /** Records a 304 for a stale entry: it is served again and counts as fresh from now on. */
+    public Entry revalidated(String key, Entry stale) {
+        revalidations.increment();
+        Entry refreshed = new Entry(stale.body(), stale.charset(), stale.etag(), stale.lastModified(), System.currentTimeMillis());
+        putInMemory(key, refreshed);
+        writeToDisk(key, refreshed);
+        return refreshed;
+    }
+
+    /** Marks an entry stale, so the next fetch revalidates it instead of serving it; e.g. a work known to have changed. */
+    public void expire(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = memory.get(key);
+        }
+        if (entry == null) entry = readFromDisk(key);
+        if (entry == null) return;
+        Entry stale = new Entry(entry.body(), entry.charset(), entry.etag(), entry.lastModified(), 0);
+        putInMemory(key, stale);
+        writeToDisk(key, stale);
+    }
+
+    /** Counts bytes handed back to a caller without downloading them. */
+    public void recordServed(Entry entry) {
+        bytesFromCache.add(entry.body().length);
+    }
+
+    public Stats stats() {
+        long inMemory;
+        synchronized (this) {
+            inMemory = memoryBytes;
+        }
+        return new Stats(memoryHits.sum(), diskHits.sum(), misses.sum(), revalidations.sum(),
+                bytesFromCache.sum(), bytesFromNetwork.sum(), inMemory);
+    }
+
+    /**
+     * Deletes the oldest disk entries until the disk tier fits in its budget, with some room to spare,
+     * and any {@code .tmp} left behind by a download whose process crashed. Runs in the background when
+     * {@link Ao3Client} starts and by itself once writes take the disk tier over budget. Safe to call
+     * from any thread.
+     */
+    public void trimDisk() {
+        synchronized (trimLock) {
+            trim();
+        }
+    }
+
+    private void trim() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = new ArrayList<>();
+            long staleBefore = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".gz")) entries.add(p);
+                else if (name.endsWith(".tmp") && lastModifiedMillis(p) < staleBefore) deleteQuietly(p);
+            }
+            entries.sort(Comparator.comparingLong(ResponseCache::lastModifiedMillis));
+            long total = 0;
+            for (Path p : entries) total += Files.size(p);
+            if (total > DISK_LIMIT_BYTES) {
+                for (Iterator<Path> it = entries.iterator(); total > DISK_TRIM_TO_BYTES && it.hasNext(); ) {
+                    Path oldest = it.next();
+                    total -= Files.size(oldest);
+                    Files.deleteIfExists(oldest);
+                }
+            }
+            diskBytes.set(total);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not trim response cache: " + e.getMessage());
+        }
+    }
+
+    // --- Memory tier ---
+    private synchronized void removeFromMemory(String key) {
+        Entry previous = memory.remove(key);
+        if (previous != null) memoryBytes -= previous.body().length;
+    }
+
+    private synchronized void putInMemory(String key, Entry entry) {
+        long size = entry.body().length;
+        if (size > MEMORY_LIMIT_BYTES / 4) return; // One huge work should not flush everything else
+        Entry previous = memory.put(key, entry);
+        if (previous != null) memoryBytes -= previous.body().length;
+        memoryBytes += size;
+        Iterator<Map.Entry<String, Entry>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > MEMORY_LIMIT_BYTES && eldest.hasNext()) {
+            memoryBytes -= eldest.next().getValue().body().length;
+            eldest.remove();
+        }
+    }
+
+    // --- Disk tier ---
+    private Path fileFor(String key) {
+        return directory.resolve(sha256(key) + ".gz");
+    }
+
+    private Entry readFromDisk(String key) {
+        Path file = fileFor(key);
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new GZIPInputStream(raw, 64 * 1024))) {
+            if (in.readInt() != FILE_MAGIC || !in.readUTF().equals(key)) return null; // Hash collision or stale format
+            long fetchedAt = in.readLong();
+            String charset = emptyToNull(in.readUTF());
+            String etag = emptyToNull(in.readUTF());
+            String lastModified = emptyToNull(in.readUTF());
+            byte[] body = in.readAllBytes();
+            return new Entry(body, charset, etag, lastModified, fetchedAt);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (ClosedByInterruptException e) {
+            // A cancelled fetch (e.g. a prefetch giving way) interrupted the read; the file itself is fine
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException e) {
+            System.err.println("Warning: Dropping unreadable cache entry " + file.getFileName() + ": " + e.getMessage());
+            deleteQuietly(file);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        try (Download download = new Download(key, entry.charset(), entry.etag(), entry.lastModified(), entry.fetchedAt())) {
+            download.write(entry.body(), 0, entry.body().length);
+            download.moveIntoPlace();
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static long lastModifiedMillis(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String sha256(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static String emptyToNull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    /** One cached response body plus the metadata needed to decide freshness and revalidate it. */
+    public record Entry(byte[] body, String charset, String etag, String lastModified, long fetchedAt) {
+        public boolean isFresh(Duration ttl) {
+            return System.currentTimeMillis() - fetchedAt < ttl.toMillis();
+        }
+    }
+
+    /**
+     * A response body on its way into the disk tier, written to a temp file next to the entries. Write
+     * failures print a warning and leave the cache as it was; the caller's reads carry on regardless.
+     */
+    public final class Download extends OutputStream {
+        private final String key;
+        private Path temp;
+        private DataOutputStream out; // null once closed or failed
+        private long bytes = 0;
+
+        private Download(String key, String charset, String etag, String lastModified, long fetchedAt) {
+            this.key = key;
+            try {
+                temp = Files.createTempFile(directory, "entry", ".tmp");
+                out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024));
+                out.writeInt(FILE_MAGIC);
+                out.writeUTF(key);
+                out.writeLong(fetchedAt);
+                out.writeUTF(nullToEmpty(charset));
+                out.writeUTF(nullToEmpty(etag));
+                out.writeUTF(nullToEmpty(lastModified));
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (out == null) return;
+            try {
+                out.write(b);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            bytes += length;
+            if (out == null) return;
+            try {
+                out.write(buffer, offset, length);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /** Body bytes written so far (uncompressed). */
+        public long bytes() {
+            return bytes;
+        }
+
+        /** The whole body has been written: it replaces the cached copy, if any, in both tiers. */
+        public void commit() {
+            bytesFromNetwork.add(bytes);
+            removeFromMemory(key);
+            moveIntoPlace();
+        }
+
+        private void moveIntoPlace() {
+            if (out == null) return;
+            try {
+                out.close();
+                out = null;
+                long size = Files.size(temp);
+                Files.move(temp, fileFor(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                temp = null;
+                if (diskBytes.addAndGet(size) > DISK_LIMIT_BYTES) trimDisk();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /** Deletes the temp file unless the entry was committed. */
+        @Override
+        public void close() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+                out = null;
+            }
+            if (temp != null) deleteQuietly(temp); // A failed or abandoned write must not leave the .tmp behind
+            temp = null;
+        }
+
+        private void fail(IOException e) {
+            if (e instanceof ClosedByInterruptException) Thread.currentThread().interrupt(); // Cancelled, not broken
+            else System.err.println("Warning: Could not write cache entry for " + key + ": " + e.getMessage());
+            close();
+        }
+    }
+
+    /** Point-in-time counters; byte counts are uncompressed body sizes. */
+    public record Stats(long memoryHits, long diskHits, long misses, long revalidations,
+                        long bytesFromCache, long bytesFromNetwork, long memoryBytes) {
+        public long hits() {
+            return memoryHits + diskHits;
+        }
+    }
+}
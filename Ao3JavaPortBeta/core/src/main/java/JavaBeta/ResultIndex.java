@@ -0,0 +1,236 @@
+package JavaBeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filters and sorts loaded search results locally, without asking AO3 again.
+ * <p>
+ * Works are numbered in arrival order. Each tag id has a {@link BitSet} of the works carrying it,
+ * so tag include/exclude, rating and completion filters are word-wide AND/OR/ANDNOT operations;
+ * word-count ranges are checked against a primitive array for the survivors only. For each sort
+ * key an array of positions is sorted once (as packed longs) and reused until more works arrive.
+ * Adding works is cheap and happens on the JavaFX thread; {@link #evaluate} is meant for a
+ * background thread. It holds the lock only to combine the bit sets and copy the arrays it needs,
+ * then filters and sorts those copies, so {@link #add} and {@link #positionOf} never wait on a sort.
+ */
+public final class ResultIndex {
+
+    public enum Completion { ANY, COMPLETE, IN_PROGRESS }
+
+    /** Sort orders; everything but NONE (AO3's own order) is descending. */
+    public enum SortKey { NONE, KUDOS, HITS, UPDATED, WORDS }
+
+    /**
+     * A local query. Each {@code includeTags} term lists alternative ids for one tag name (the same
+     * text can be a fandom and a freeform); every term must match. Any {@code excludeTags} id rules a
+     * work out. {@code ratings} empty means any rating.
+     */
+    public record Query(int[][] includeTags, int[] excludeTags, int[] ratings, int minWords, int maxWords,
+                        Completion completion, SortKey sort) {
+
+        public static final Query ALL = new Query(new int[0][], new int[0], new int[0], 0, Integer.MAX_VALUE,
+                Completion.ANY, SortKey.NONE);
+
+        public boolean isAll() {
+            return includeTags.length == 0 && excludeTags.length == 0 && ratings.length == 0 && minWords <= 0
+                    && maxWords == Integer.MAX_VALUE && completion == Completion.ANY && sort == SortKey.NONE;
+        }
+
+        /** Checks one work directly, for works that arrived after the last evaluation. */
+        public boolean matches(Work work) {
+            for (int[] term : includeTags) {
+                boolean any = false;
+                for (int id : term) any |= work.hasTag(id);
+                if (!any) return false;
+            }
+            for (int id : excludeTags) if (work.hasTag(id)) return false;
+            if (ratings.length > 0) {
+                boolean any = false;
+                for (int id : ratings) any |= work.hasTag(id);
+                if (!any) return false;
+            }
+            if (work.getWords() < minWords || work.getWords() > maxWords) return false;
+            return completion == Completion.ANY || (completion == Completion.COMPLETE) == work.isComplete();
+        }
+    }
+
+    /**
+     * Outcome of {@link #evaluate}: which of the first {@code size} works match, and their rank in
+     * the requested order.
+     */
+    public static final class Result {
+        private final int size;
+        private final BitSet matches;
+        private final int[] order;
+        private final int[] rank;
+
+        private Result(int size, BitSet matches, int[] order) {
+            this.size = size;
+            this.matches = matches;
+            this.order = order;
+            this.rank = new int[size];
+            Arrays.fill(rank, Integer.MAX_VALUE);
+            for (int i = 0; i < order.length; i++) rank[order[i]] = i;
+        }
+
+        /** Number of works the query was evaluated over. */
+        public int size() {
+            return size;
+        }
+
+        public boolean matches(int position) {
+            return position < size && matches.get(position);
+        }
+
+        /** Matching positions, in sorted order. */
+        public int[] order() {
+            return order;
+        }
+
+        /** Place of {@code position} in the sorted order; MAX_VALUE for works not covered by this result. */
+        public int rank(int position) {
+            return position < size ? rank[position] : Integer.MAX_VALUE;
+        }
+    }
+
+    private final List<Work> works = new ArrayList<>();
+    private final Map<Work, Integer> positions = new IdentityHashMap<>();
+    private BitSet[] worksByTag = new BitSet[256];
+    private final BitSet complete = new BitSet();
+    private int[] words = new int[256];
+    private int[] kudos = new int[256];
+    private int[] hits = new int[256];
+    private int[] updated = new int[256];
+    private final Map<SortKey, int[]> sorted = new EnumMap<>(SortKey.class); // valid for sorted[k].length works
+    private int generation = 0; // Bumped by clear, so a sort finished after it isn't cached for the new works
+
+    public synchronized void add(List<? extends Work> added) {
+        for (Work work : added) {
+            if (positions.containsKey(work)) continue;
+            int pos = works.size();
+            works.add(work);
+            positions.put(work, pos);
+            if (pos == words.length) {
+                int grown = pos * 2;
+                words = Arrays.copyOf(words, grown);
+                kudos = Arrays.copyOf(kudos, grown);
+                hits = Arrays.copyOf(hits, grown);
+                updated = Arrays.copyOf(updated, grown);
+            }
+            words[pos] = work.getWords();
+            kudos[pos] = work.getKudos();
+            hits[pos] = work.getHits();
+            updated[pos] = work.getUpdated() == null ? -1 : (int) work.getUpdated().toEpochDay();
+            if (work.isComplete()) complete.set(pos);
+            for (int tag : work.tagIds()) {
+                if (tag >= worksByTag.length) worksByTag = Arrays.copyOf(worksByTag, Math.max(tag + 1, worksByTag.length * 2));
+                if (worksByTag[tag] == null) worksByTag[tag] = new BitSet();
+                worksByTag[tag].set(pos);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        works.clear();
+        positions.clear();
+        Arrays.fill(worksByTag, null);
+        complete.clear();
+        sorted.clear();
+        generation++;
+    }
+
+    public synchronized int size() {
+        return works.size();
+    }
+
+    /** Arrival position of a work, or -1 if it was never added. */
+    public synchronized int positionOf(Work work) {
+        Integer pos = positions.get(work);
+        return pos == null ? -1 : pos;
+    }
+
+    public Result evaluate(Query query) {
+        boolean byWords = query.minWords() > 0 || query.maxWords() < Integer.MAX_VALUE;
+        SortKey key = query.sort();
+        int n, seenGeneration;
+        BitSet match;
+        int[] wordCounts = null, sortValues = null, sortOrder = null;
+        synchronized (this) {
+            n = works.size();
+            seenGeneration = generation;
+            match = new BitSet(n);
+            match.set(0, n);
+            for (int[] term : query.includeTags()) match.and(union(term));
+            for (int id : query.excludeTags()) {
+                if (id >= 0 && id < worksByTag.length && worksByTag[id] != null) match.andNot(worksByTag[id]);
+            }
+            if (query.ratings().length > 0) match.and(union(query.ratings()));
+            if (query.completion() == Completion.COMPLETE) match.and(complete);
+            if (query.completion() == Completion.IN_PROGRESS) match.andNot(complete);
+            if (byWords) wordCounts = Arrays.copyOf(words, n);
+            if (key != SortKey.NONE) {
+                int[] cached = sorted.get(key);
+                if (cached != null && cached.length == n) sortOrder = cached;
+                else sortValues = Arrays.copyOf(valuesFor(key), n);
+            }
+        }
+
+        // The rest works on copies; arrays in the sort cache are never written once stored
+        if (byWords) {
+            for (int i = match.nextSetBit(0); i >= 0; i = match.nextSetBit(i + 1)) {
+                if (wordCounts[i] < query.minWords() || wordCounts[i] > query.maxWords()) match.clear(i);
+            }
+        }
+        int[] order = new int[match.cardinality()];
+        if (key == SortKey.NONE) {
+            int k = 0;
+            for (int i = match.nextSetBit(0); i >= 0; i = match.nextSetBit(i + 1)) order[k++] = i;
+        } else {
+            if (sortOrder == null) {
+                sortOrder = sortDescending(sortValues);
+                synchronized (this) {
+                    if (generation == seenGeneration) sorted.put(key, sortOrder);
+                }
+            }
+            int k = 0;
+            for (int pos : sortOrder) if (match.get(pos)) order[k++] = pos;
+        }
+        return new Result(n, match, order);
+    }
+
+    private BitSet union(int[] tagIds) {
+        BitSet any = new BitSet();
+        for (int id : tagIds) {
+            if (id >= 0 && id < worksByTag.length && worksByTag[id] != null) any.or(worksByTag[id]);
+        }
+        return any;
+    }
+
+    private int[] valuesFor(SortKey key) {
+        return switch (key) {
+            case KUDOS -> kudos;
+            case HITS -> hits;
+            case UPDATED -> updated;
+            case WORDS -> words;
+            case NONE -> throw new IllegalArgumentException("NONE has no sort order");
+        };
+    }
+
+    /** Positions ordered by {@code values}, highest first, ties in arrival order. */
+    private static int[] sortDescending(int[] values) {
+        int n = values.length;
+        // Packing (inverted value, position) into one long lets a primitive sort do the work
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) packed[i] = ((long) (Integer.MAX_VALUE - Math.max(values[i], 0)) << 32) | i;
+        Arrays.sort(packed);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = (int) packed[i];
+        return order;
+    }
+}
@@ -0,0 +1,213 @@
+package JavaBeta;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Fetches AO3 search result pages and other work listings (series, user works, bookmarks) and
+ * parses their blurbs into {@link Work}s.
+ * <p>
+ * {@link #search} is the asynchronous entry point. The blocking {@link #fetchPage} and
+ * {@link #fetchListing} read the page with Jsoup's {@link StreamParser} as it downloads and hand each
+ * work to a callback as soon as its blurb's end tag has been parsed, for callers that show results
+ * while the page is still being read. Finished blurbs and the page chrome around them are dropped
+ * from the tree right away, so the page is never held whole.
+ */
+public final class SearchClient {
+
+    /** The works on one listing page, and the highest page number the listing has. */
+    public record Page(int lastPage, List<Work> works) {
+    }
+
+    private static final String SEARCH_URL = Ao3Client.BASE_URL + "/works/search?work_search[query]=";
+    private static final DateTimeFormatter BLURB_DATE = DateTimeFormatter.ofPattern("dd MMM yyyy", Locale.ENGLISH);
+    private static final SearchClient INSTANCE = new SearchClient();
+
+    private SearchClient() {
+    }
+
+    public static SearchClient get() {
+        return INSTANCE;
+    }
+
+    /** Fetches one page of results for {@code query} (see {@link SearchQuery}) in the background. */
+    public CompletableFuture<Page> search(String query, int page) {
+        return Ao3Client.get().async(() -> fetchPage(query, page, null, work -> { }, () -> false));
+    }
+
+    /** Blocking search; {@code limiter} may be null for a one-off request. */
+    public Page fetchPage(String query, int page, RateLimiter limiter, Consumer<Work> onWork, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        return fetchListing(searchUrl(query, page), limiter, onWork, cancelled);
+    }
+
+    /** Blocking fetch of any page of work or bookmark blurbs; stops parsing once {@code cancelled} says so. */
+    public Page fetchListing(String url, RateLimiter limiter, Consumer<Work> onWork, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        return Ao3Client.get().fetchParsed(url, limiter, Metrics.PARSE_JSOUP,
+                (body, charset) -> streamListing(body, charset, url, onWork, cancelled));
+    }
+
+    private static Page streamListing(InputStream body, String charset, String baseUri, Consumer<Work> onWork,
+                                      BooleanSupplier cancelled) throws IOException {
+        Charset cs = charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset);
+        List<Work> works = new ArrayList<>();
+        int lastPage = 1;
+        try (StreamParser parser = new StreamParser(Parser.htmlParser())) {
+            parser.parse(new BufferedReader(new InputStreamReader(body, cs)), baseUri);
+            Iterator<Element> elements = parser.iterator();
+            while (elements.hasNext()) {
+                if (cancelled.getAsBoolean()) {
+                    parser.stop();
+                    break;
+                }
+                Element el = elements.next();
+                if (isBlurb(el)) {
+                    Work work = parseWork(el);
+                    if (work != null) {
+                        works.add(work);
+                        onWork.accept(work);
+                    }
+                    el.remove();
+                } else if (isPagination(el)) {
+                    // AO3 repeats the pagination bar above and below the list; either one will do
+                    lastPage = Math.max(lastPage, parseLastPage(el));
+                    el.remove();
+                } else if (!insideKept(el)) {
+                    el.remove();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // The stream iterator wraps read errors
+        }
+        return new Page(lastPage, works);
+    }
+
+    private static boolean isBlurb(Element el) {
+        return el.nameIs("li") && el.hasClass("blurb") && (el.hasClass("work") || el.hasClass("bookmark"));
+    }
+
+    private static boolean isPagination(Element el) {
+        return el.nameIs("ol") && el.hasClass("pagination");
+    }
+
+    /** Inside a blurb or pagination bar that is still being parsed, so needed once it completes. */
+    private static boolean insideKept(Element el) {
+        for (Element parent = el.parent(); parent != null; parent = parent.parent()) {
+            if (isBlurb(parent) || isPagination(parent)) return true;
+        }
+        return false;
+    }
+
+    public static String searchUrl(String query, int page) {
+        return SEARCH_URL + URLEncoder.encode(query, StandardCharsets.UTF_8) + "&page=" + page;
+    }
+
+    // --- Parsing ---
+    /** Reads the highest page number from an AO3 pagination bar ({@code ol.pagination}), or 1 when it has none. */
+    public static int parseLastPage(Element pagination) {
+        int last = 1;
+        for (Element link : pagination.select("li a")) {
+            String text = link.text().trim();
+            if (text.matches("\\d+")) last = Math.max(last, Integer.parseInt(text));
+        }
+        return last;
+    }
+
+    /**
+     * Reads everything the blurb shows (author, tags, rating, stats, update date) in one pass over
+     * its elements. Tags are interned in the shared {@link TagDictionary}.
+     */
+    public static Work parseWork(Element workEl) {
+        Element titleEl = workEl.selectFirst("h4.heading a[href^='/works/']");
+        if (titleEl == null) return null; // External works and deleted works in bookmark listings
+        String title = titleEl.text();
+        String workUrl = Ao3Client.BASE_URL + titleEl.attr("href");
+        List<String> authors = workEl.select("h4.heading a[rel=author]").eachText();
+        String author = authors.isEmpty() ? "Anonymous" : String.join(", ", authors);
+
+        TagDictionary dictionary = TagDictionary.shared();
+        List<Integer> tags = new ArrayList<>();
+        Element rating = workEl.selectFirst("ul.required-tags span.rating");
+        if (rating != null) tags.add(dictionary.intern(TagDictionary.Kind.RATING, rating.attr("title")));
+        Element category = workEl.selectFirst("ul.required-tags span.category");
+        if (category != null) {
+            for (String name : category.attr("title").split(",\\s*")) {
+                if (!name.isBlank()) tags.add(dictionary.intern(TagDictionary.Kind.CATEGORY, name));
+            }
+        }
+        for (Element fandom : workEl.select("h5.fandoms a.tag")) {
+            tags.add(dictionary.intern(TagDictionary.Kind.FANDOM, fandom.text()));
+        }
+        for (Element group : workEl.select("ul.tags > li")) {
+            TagDictionary.Kind kind = group.hasClass("warnings") ? TagDictionary.Kind.WARNING
+                    : group.hasClass("relationships") ? TagDictionary.Kind.RELATIONSHIP
+                    : group.hasClass("characters") ? TagDictionary.Kind.CHARACTER
+                    : TagDictionary.Kind.FREEFORM;
+            Element tag = group.selectFirst("a.tag");
+            if (tag != null) tags.add(dictionary.intern(kind, tag.text()));
+        }
+
+        Element stats = workEl.selectFirst("dl.stats");
+        Element language = stats == null ? null : stats.selectFirst("dd.language");
+        String chapters = statText(stats, "chapters");
+        int slash = chapters.indexOf('/');
+        int expected = slash < 0 ? -1 : parseCount(chapters.substring(slash + 1));
+        return new Work(title, author, workUrl,
+                tags.stream().mapToInt(Integer::intValue).toArray(),
+                language == null ? -1 : dictionary.intern(TagDictionary.Kind.LANGUAGE, language.text()),
+                parseCount(statText(stats, "words")),
+                parseCount(slash < 0 ? chapters : chapters.substring(0, slash)),
+                expected == 0 ? -1 : expected,
+                parseCount(statText(stats, "kudos")),
+                parseCount(statText(stats, "hits")),
+                parseCount(statText(stats, "comments")),
+                parseCount(statText(stats, "bookmarks")),
+                parseDate(workEl.selectFirst("p.datetime")));
+    }
+
+    private static String statText(Element stats, String name) {
+        Element dd = stats == null ? null : stats.selectFirst("dd." + name);
+        return dd == null ? "" : dd.text();
+    }
+
+    /** "12,345" -> 12345; blanks and "?" count as 0. */
+    private static int parseCount(String text) {
+        int value = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /** Blurb dates look like "02 Jan 2024"; returns the epoch day, or -1. */
+    private static int parseDate(Element datetime) {
+        if (datetime == null) return -1;
+        try {
+            return (int) LocalDate.parse(datetime.text().trim(), BLURB_DATE).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package JavaBeta;
+
+import java.util.StringJoiner;
+
+/**
+ * Builds the text of an AO3 work search from separate fields, the way the search form fills them:
+ * {@code new SearchQuery().title("The Raven").tags("Angst").build()} gives
+ * {@code title:"The Raven" Angst}. Blank fields are left out.
+ */
+public final class SearchQuery {
+
+    private String any = "";
+    private String title = "";
+    private String author = "";
+    private String tags = "";
+
+    /** Free text, passed on as typed (AO3's own operators such as {@code words>1000} work here). */
+    public SearchQuery any(String text) {
+        this.any = text == null ? "" : text;
+        return this;
+    }
+
+    public SearchQuery title(String text) {
+        this.title = text == null ? "" : text;
+        return this;
+    }
+
+    public SearchQuery author(String text) {
+        this.author = text == null ? "" : text;
+        return this;
+    }
+
+    /** Tags, passed on as typed. */
+    public SearchQuery tags(String text) {
+        this.tags = text == null ? "" : text;
+        return this;
+    }
+
+    /** The query string; empty when every field is blank. */
+    public String build() {
+        StringJoiner sj = new StringJoiner(" ");
+        addPart(sj, "", any, false);
+        addPart(sj, "title:", title, true);
+        addPart(sj, "author:", author, true);
+        addPart(sj, "", tags, false);
+        return sj.toString();
+    }
+
+    @Override
+    public String toString() {
+        return build();
+    }
+
+    private static void addPart(StringJoiner sj, String prefix, String value, boolean quote) {
+        String val = value.trim();
+        if (!val.isEmpty()) sj.add(quote && val.contains(" ") ? prefix + "\"" + val + "\"" : prefix + val);
+    }
+}
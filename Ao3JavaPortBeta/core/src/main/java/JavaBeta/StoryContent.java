@@ -0,0 +1,122 @@
+package JavaBeta;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The text of a work split into chapters, so the reader can render one chapter at a time.
+ * <p>
+ * AO3 puts each chapter of a multi-chapter work in {@code #chapters > div.chapter}. The work
+ * preface (title, summary, notes) is kept with the first chapter and the afterword with the last;
+ * a single-chapter work becomes one chapter holding the whole {@code #workskin}. Chapters can be
+ * held in memory or loaded on demand, e.g. decompressed one at a time from the offline library.
+ */
+public final class StoryContent {
+
+    /** Loads the markup of one chapter when it is needed. */
+    public interface ChapterSource {
+        String load(int index) throws IOException;
+    }
+
+    private final String preface;
+    private final int chapterCount;
+    private final ChapterSource chapters;
+    private final String afterword;
+
+    private StoryContent(String preface, int chapterCount, ChapterSource chapters, String afterword) {
+        this.preface = preface;
+        this.chapterCount = chapterCount;
+        this.chapters = chapters;
+        this.afterword = afterword;
+    }
+
+    /** Splits the contents of a {@code #workskin} element (or any element wrapping the same markup). */
+    public static StoryContent fromWorkskin(Element workskin) {
+        Elements chapterEls = workskin.select("#chapters > div.chapter");
+        if (chapterEls.size() <= 1) return single(workskin.html());
+
+        List<String> chapters = new ArrayList<>(chapterEls.size());
+        for (Element chapterEl : chapterEls) chapters.add(chapterEl.outerHtml());
+
+        Element preface = workskin.selectFirst("> div.preface");
+        Element afterword = workskin.selectFirst("> div.afterword");
+        return of(preface == null ? "" : preface.outerHtml(), chapters, afterword == null ? "" : afterword.outerHtml());
+    }
+
+    /** Splits saved {@code #workskin} inner HTML, e.g. a work from the offline library. */
+    public static StoryContent fromHtml(String html) {
+        return fromWorkskin(Jsoup.parseBodyFragment(html).body());
+    }
+
+    /** Content of a legacy .html/.txt library file: markup is split like a work page, text is turned into paragraphs. */
+    public static StoryContent fromFile(String fileContent) {
+        String trimmed = fileContent.trim();
+        if (trimmed.toLowerCase().startsWith("<!doctype") || trimmed.startsWith("<")) return fromHtml(fileContent);
+        return single(PlainText.toHtml(fileContent));
+    }
+
+    public static StoryContent single(String html) {
+        return of("", List.of(html), "");
+    }
+
+    public static StoryContent of(String preface, List<String> chapters, String afterword) {
+        List<String> copy = List.copyOf(chapters);
+        return new StoryContent(preface, copy.size(), copy::get, afterword);
+    }
+
+    /** A work whose chapters are only read when {@link #chapter(int)} asks for them. */
+    public static StoryContent lazy(String preface, int chapterCount, ChapterSource chapters, String afterword) {
+        return new StoryContent(preface, chapterCount, chapters, afterword);
+    }
+
+    /** This work with chapters added at the end; existing chapters are still loaded from the original source. */
+    public StoryContent withChaptersAppended(List<String> newChapters, String newAfterword) {
+        List<String> added = List.copyOf(newChapters);
+        int oldCount = chapterCount;
+        return new StoryContent(preface, oldCount + added.size(),
+                index -> index < oldCount ? chapters.load(index) : added.get(index - oldCount), newAfterword);
+    }
+
+    public int chapterCount() {
+        return chapterCount;
+    }
+
+    /** Markup to render for one chapter; the first and last also carry the work preface and afterword. */
+    public String chapter(int index) {
+        String html = rawChapter(index);
+        if (index == 0) html = preface + html;
+        if (index == chapterCount - 1) html = html + afterword;
+        return html;
+    }
+
+    /** Markup of one chapter on its own. */
+    public String rawChapter(int index) {
+        try {
+            return chapters.load(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load chapter " + (index + 1), e);
+        }
+    }
+
+    public String preface() {
+        return preface;
+    }
+
+    public String afterword() {
+        return afterword;
+    }
+
+    /** The whole work as one HTML fragment, in the same shape AO3 serves it. */
+    public String toHtml() {
+        if (chapterCount == 1 && preface.isEmpty() && afterword.isEmpty()) return rawChapter(0);
+        StringBuilder sb = new StringBuilder(preface).append("\n<div id=\"chapters\">\n");
+        for (int i = 0; i < chapterCount; i++) sb.append(rawChapter(i)).append('\n');
+        return sb.append("</div>\n").append(afterword).toString();
+    }
+}
@@ -0,0 +1,156 @@
+package JavaBeta;
+
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pulls the story out of a work page while it is being read, without building the whole page.
+ * <p>
+ * Jsoup's {@link StreamParser} hands over each element as soon as its end tag is parsed. Everything
+ * outside {@code #workskin} (AO3's header, navigation, work skin CSS, scripts) is dropped the moment
+ * it completes, and each finished chapter is serialized into one reused buffer and removed from the
+ * tree. So the parsed page never holds more than about one chapter, and parsing stops at the end of
+ * {@code #workskin}, before the comments and footer.
+ * <p>
+ * Inside the workskin, scripts, styles, AO3's screen-reader landmarks and event handler attributes
+ * are removed, and relative links and images are made absolute so saved copies still work offline.
+ */
+public final class StoryExtractor {
+
+    /** The story plus the few bits of metadata around it that callers need. Any of the strings may be null. */
+    public record Extracted(StoryContent story, String title, String author, String updated) {
+    }
+
+    private static final Set<String> DROPPED_TAGS = Set.of("script", "style", "link", "meta", "noscript", "form");
+
+    private final StringBuilder out = new StringBuilder(64 * 1024); // Reused for every chapter
+    private final List<String> chapters = new ArrayList<>();
+    private Element firstChapter; // Kept in the tree until a second chapter shows the work is multi-chapter
+    private String status;
+    private String published;
+
+    private StoryExtractor() {
+    }
+
+    /**
+     * Reads a work page from {@code body} (charset null means UTF-8, which AO3 always sends).
+     * Returns null when the page has no {@code #workskin}, e.g. a restricted work's login page.
+     * Bytes after the workskin are left unread.
+     */
+    public static Extracted extract(InputStream body, String charset, String baseUri) throws IOException {
+        return new StoryExtractor().run(body, charset, baseUri);
+    }
+
+    /** Fetches a work page through {@link Ao3Client} and extracts it as it downloads; null without a workskin. */
+    public static Extracted fetch(String url, RateLimiter limiter) throws IOException, InterruptedException {
+        return Ao3Client.get().fetchParsed(url, limiter, Metrics.PARSE_WORKSKIN, (body, charset) -> extract(body, charset, url));
+    }
+
+    private Extracted run(InputStream body, String charset, String baseUri) throws IOException {
+        Charset cs = charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset);
+        try (StreamParser parser = new StreamParser(Parser.htmlParser())) {
+            parser.parse(new BufferedReader(new InputStreamReader(body, cs)), baseUri);
+            parser.document().outputSettings().prettyPrint(false);
+            Iterator<Element> elements = parser.iterator();
+            while (elements.hasNext()) {
+                Element el = elements.next();
+                if ("workskin".equals(el.id())) {
+                    parser.stop();
+                    return finish(el);
+                }
+                if (insideWorkskin(el)) {
+                    clean(el);
+                } else {
+                    remember(el);
+                    el.remove();
+                }
+            }
+            return null;
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // The stream iterator wraps read errors
+        }
+    }
+
+    private static boolean insideWorkskin(Element el) {
+        for (Element parent = el.parent(); parent != null; parent = parent.parent()) {
+            if ("workskin".equals(parent.id())) return true;
+        }
+        return false;
+    }
+
+    /** Keeps what's needed from the page chrome before it is dropped. */
+    private void remember(Element el) {
+        if (!el.nameIs("dd")) return;
+        if (el.hasClass("status")) status = el.text().trim();
+        else if (el.hasClass("published")) published = el.text().trim();
+    }
+
+    private void clean(Element el) throws IOException {
+        if (DROPPED_TAGS.contains(el.normalName()) || el.hasClass("landmark")) {
+            el.remove();
+            return;
+        }
+        List<String> handlers = new ArrayList<>();
+        for (Attribute attribute : el.attributes()) {
+            if (attribute.getKey().regionMatches(true, 0, "on", 0, 2)) handlers.add(attribute.getKey());
+        }
+        handlers.forEach(el::removeAttr);
+        absolutize(el, "href");
+        absolutize(el, "src");
+
+        if (el.nameIs("div") && el.hasClass("chapter") && el.parent() != null && "chapters".equals(el.parent().id())) {
+            chapters.add(serialize(el, true));
+            if (chapters.size() == 1) {
+                firstChapter = el; // A one-chapter work is saved whole, like a one-shot
+            } else {
+                if (firstChapter != null) firstChapter.remove();
+                firstChapter = null;
+                el.remove();
+            }
+        }
+    }
+
+    private static void absolutize(Element el, String key) {
+        String value = el.attr(key);
+        if (value.isEmpty() || value.startsWith("#")) return; // In-page links, e.g. footnotes, stay relative
+        String absolute = el.absUrl(key);
+        if (!absolute.isEmpty()) el.attr(key, absolute);
+    }
+
+    private Extracted finish(Element skin) throws IOException {
+        Element preface = skin.selectFirst("> div.preface");
+        Element afterword = skin.selectFirst("> div.afterword");
+        Element title = preface == null ? null : preface.selectFirst("h2.title");
+        Element author = preface == null ? null : preface.selectFirst("h3.byline a[rel=author]");
+
+        StoryContent story = chapters.size() <= 1
+                ? StoryContent.single(serialize(skin, false))
+                : StoryContent.of(preface == null ? "" : serialize(preface, true), chapters,
+                        afterword == null ? "" : serialize(afterword, true));
+        return new Extracted(story, title == null ? null : title.text().trim(), author == null ? null : author.text().trim(),
+                status != null ? status : published);
+    }
+
+    /** Markup of {@code el} (with its own tag when {@code outer}), built in the shared buffer. */
+    private String serialize(Element el, boolean outer) throws IOException {
+        out.setLength(0);
+        if (outer) out.append('<').append(el.tagName()).append(el.attributes().html()).append('>');
+        el.html(out);
+        if (outer) out.append("</").append(el.tagName()).append('>');
+        return out.toString();
+    }
+}
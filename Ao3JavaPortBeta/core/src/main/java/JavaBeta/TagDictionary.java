@@ -0,0 +1,100 @@
+package JavaBeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns tag names (and the other strings every result repeats: authors, languages, ratings)
+ * into small int ids, so a {@link Work} holds an {@code int[]} instead of its own copy of each tag.
+ * <p>
+ * A popular fandom or warning appears on thousands of results but is stored here exactly once.
+ * Ids are dense and never reused, which also makes them usable as bit positions or array indexes.
+ * Lookups are lock-free; only adding a new name takes the lock.
+ */
+public final class TagDictionary {
+
+    /** What a name is. The same text under two kinds (say a fandom and a freeform) gets two ids. */
+    public enum Kind { AUTHOR, LANGUAGE, RATING, WARNING, CATEGORY, FANDOM, RELATIONSHIP, CHARACTER, FREEFORM }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final TagDictionary SHARED = new TagDictionary();
+
+    private final Map<Kind, Map<String, Integer>> ids = new EnumMap<>(Kind.class);
+    private volatile String[] names = new String[256]; // written under the lock before the id is published
+    private volatile byte[] kinds = new byte[256];
+    private int size = 0;                               // guarded by this
+
+    public TagDictionary() {
+        for (Kind kind : KINDS) ids.put(kind, new ConcurrentHashMap<>());
+    }
+
+    /** The dictionary all parsed works share. */
+    public static TagDictionary shared() {
+        return SHARED;
+    }
+
+    /** Id of {@code name}, adding it if this is the first time it is seen. */
+    public int intern(Kind kind, String name) {
+        Integer id = ids.get(kind).get(name);
+        return id != null ? id : add(kind, name);
+    }
+
+    /** Id of {@code name}, or -1 if no parsed work has used it. */
+    public int lookup(Kind kind, String name) {
+        Integer id = ids.get(kind).get(name);
+        return id == null ? -1 : id;
+    }
+
+    /** Ids of every kind of tag spelled {@code name}, ignoring case; empty if none has been seen. */
+    public int[] findAll(String name) {
+        List<Integer> found = new ArrayList<>();
+        for (Kind kind : KINDS) {
+            if (kind == Kind.AUTHOR || kind == Kind.LANGUAGE) continue;
+            Integer exact = ids.get(kind).get(name);
+            if (exact != null) {
+                found.add(exact);
+                continue;
+            }
+            for (Map.Entry<String, Integer> entry : ids.get(kind).entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(name)) found.add(entry.getValue());
+            }
+        }
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Names of one kind seen so far, e.g. every rating; in no particular order. */
+    public List<String> names(Kind kind) {
+        return new ArrayList<>(ids.get(kind).keySet());
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public Kind kind(int id) {
+        return KINDS[kinds[id]];
+    }
+
+    /** Number of ids handed out; every id is below this. */
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(Kind kind, String name) {
+        Integer existing = ids.get(kind).get(name);
+        if (existing != null) return existing; // Another thread added it first
+        if (size == names.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        int id = size++;
+        kinds[id] = (byte) kind.ordinal();
+        names[id] = name;
+        ids.get(kind).put(name, id);
+        return id;
+    }
+}
@@ -0,0 +1,88 @@
+package JavaBeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Prefix trie of tag names seen in earlier results, for autocompleting tag fields.
+ * <p>
+ * Matching ignores case; suggestions keep the spelling AO3 uses and come most-seen first. Children
+ * are kept in small sorted char arrays, which suits tag text (mostly letters, few branches per node).
+ * Not thread-safe; used from the JavaFX thread only.
+ */
+public final class TagTrie {
+
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        String name;  // set on nodes that end a tag
+        int seen;     // how many works carried the tag
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+
+        Node childOrAdd(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) return children[i];
+            int at = -i - 1;
+            char[] grownKeys = new char[keys.length + 1];
+            Node[] grownChildren = new Node[keys.length + 1];
+            System.arraycopy(keys, 0, grownKeys, 0, at);
+            System.arraycopy(children, 0, grownChildren, 0, at);
+            System.arraycopy(keys, at, grownKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, grownChildren, at + 1, keys.length - at);
+            grownKeys[at] = c;
+            grownChildren[at] = new Node();
+            keys = grownKeys;
+            children = grownChildren;
+            return grownChildren[at];
+        }
+    }
+
+    private final Node root = new Node();
+    private int size = 0;
+
+    /** Records one more sighting of {@code name}. */
+    public void add(String name) {
+        Node node = root;
+        for (int i = 0; i < name.length(); i++) node = node.childOrAdd(Character.toLowerCase(name.charAt(i)));
+        if (node.name == null) {
+            node.name = name;
+            size++;
+        }
+        node.seen++;
+    }
+
+    /** Number of distinct names. */
+    public int size() {
+        return size;
+    }
+
+    /** Up to {@code limit} names starting with {@code prefix} (ignoring case), most seen first. */
+    public List<String> complete(String prefix, int limit) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) node = node.child(Character.toLowerCase(prefix.charAt(i)));
+        if (node == null || limit <= 0) return List.of();
+
+        // Keep the best `limit` names in a min-heap while walking the subtree
+        PriorityQueue<Node> best = new PriorityQueue<>((a, b) -> a.seen != b.seen
+                ? Integer.compare(a.seen, b.seen) : b.name.compareTo(a.name));
+        List<Node> stack = new ArrayList<>();
+        stack.add(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.remove(stack.size() - 1);
+            if (current.name != null) {
+                best.add(current);
+                if (best.size() > limit) best.poll();
+            }
+            for (Node child : current.children) stack.add(child);
+        }
+        List<String> names = new ArrayList<>(best.size());
+        while (!best.isEmpty()) names.add(best.poll().name);
+        return names.reversed();
+    }
+}
@@ -0,0 +1,34 @@
+package JavaBeta;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/** Exports a work as reflowed UTF-8 text (see {@link PlainText}), chapter by chapter. */
+public final class TextExporter implements WorkExporter {
+
+    @Override
+    public String extension() {
+        return ".txt";
+    }
+
+    @Override
+    public String description() {
+        return "Plain text";
+    }
+
+    @Override
+    public void export(LibraryEntry entry, StoryContent story, OutputStream out) throws IOException {
+        Writer text = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        text.write(entry.title() + "\n");
+        if (entry.author() != null) text.write("by " + entry.author() + "\n");
+        if (entry.url() != null) text.write(entry.url() + "\n");
+        for (int i = 0; i < story.chapterCount(); i++) {
+            text.write("\n\n");
+            text.write(PlainText.fromHtml(story.chapter(i), PlainText.DEFAULT_WIDTH));
+        }
+        text.flush();
+    }
+}
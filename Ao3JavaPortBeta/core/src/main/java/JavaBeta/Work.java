@@ -0,0 +1,157 @@
+package JavaBeta;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One AO3 work as listed in a search result or listing blurb.
+ * <p>
+ * Kept small because result lists can grow to tens of thousands of works: tags, author, rating and
+ * language are ids in the shared {@link TagDictionary}, stats are primitive fields, and the URL is
+ * rebuilt from the numeric work id. The only per-work string is the title.
+ */
+public class Work {
+    private static final Pattern WORK_ID = Pattern.compile("/works/(\\d+)");
+
+    private final String title;
+    private final int authorId;
+    private final long workId;        // 0 when the URL is not a plain /works/<id> link
+    private final String otherUrl;    // only set when workId is 0
+    private final int[] tagIds;       // every tag-like id (rating, warnings, fandoms, ...), in blurb order
+    private final int languageId;     // -1 if unknown
+    private final int words;
+    private final int chapters;
+    private final int expectedChapters; // -1 for "?"
+    private final int kudos;
+    private final int hits;
+    private final int comments;
+    private final int bookmarks;
+    private final int updatedEpochDay;  // -1 if unknown
+
+    public Work(String title, String author, String url) {
+        this(title, author, url, new int[0], -1, 0, 0, -1, 0, 0, 0, 0, -1);
+    }
+
+    Work(String title, String author, String url, int[] tagIds, int languageId, int words, int chapters,
+         int expectedChapters, int kudos, int hits, int comments, int bookmarks, int updatedEpochDay) {
+        this.title = title;
+        this.authorId = TagDictionary.shared().intern(TagDictionary.Kind.AUTHOR, author == null ? "" : author);
+        Matcher id = url == null ? null : WORK_ID.matcher(url);
+        boolean plain = id != null && id.find() && url.equals(Ao3Client.BASE_URL + id.group());
+        this.workId = plain ? Long.parseLong(id.group(1)) : 0;
+        this.otherUrl = plain ? null : url;
+        this.tagIds = tagIds;
+        this.languageId = languageId;
+        this.words = words;
+        this.chapters = chapters;
+        this.expectedChapters = expectedChapters;
+        this.kudos = kudos;
+        this.hits = hits;
+        this.comments = comments;
+        this.bookmarks = bookmarks;
+        this.updatedEpochDay = updatedEpochDay;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return TagDictionary.shared().name(authorId);
+    }
+
+    public String getUrl() {
+        return workId != 0 ? Ao3Client.BASE_URL + "/works/" + workId : otherUrl;
+    }
+
+    public long getWorkId() {
+        return workId;
+    }
+
+    /** Dictionary ids of all the work's tags; callers must not modify the array. */
+    public int[] tagIds() {
+        return tagIds;
+    }
+
+    public boolean hasTag(int tagId) {
+        for (int id : tagIds) if (id == tagId) return true;
+        return false;
+    }
+
+    /** Tag names of one kind, e.g. the fandoms; built on demand from the dictionary. */
+    public List<String> getTags(TagDictionary.Kind kind) {
+        TagDictionary dictionary = TagDictionary.shared();
+        List<String> tags = new ArrayList<>();
+        for (int id : tagIds) if (dictionary.kind(id) == kind) tags.add(dictionary.name(id));
+        return tags;
+    }
+
+    public String getRating() {
+        List<String> rating = getTags(TagDictionary.Kind.RATING);
+        return rating.isEmpty() ? null : rating.get(0);
+    }
+
+    public String getLanguage() {
+        return languageId < 0 ? null : TagDictionary.shared().name(languageId);
+    }
+
+    public int getWords() {
+        return words;
+    }
+
+    public int getChapters() {
+        return chapters;
+    }
+
+    /** Planned chapter count, or -1 when the author hasn't said ("5/?"). */
+    public int getExpectedChapters() {
+        return expectedChapters;
+    }
+
+    public boolean isComplete() {
+        return expectedChapters > 0 && chapters >= expectedChapters;
+    }
+
+    public int getKudos() {
+        return kudos;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getComments() {
+        return comments;
+    }
+
+    public int getBookmarks() {
+        return bookmarks;
+    }
+
+    /** Date of the last update as shown on the blurb, or null. */
+    public LocalDate getUpdated() {
+        return updatedEpochDay < 0 ? null : LocalDate.ofEpochDay(updatedEpochDay);
+    }
+
+    /** One-line summary for result lists, e.g. "Fandom · 12,345 words · 3/? chapters · 1,100 kudos". */
+    public String statsLine() {
+        StringJoiner line = new StringJoiner(" \u00b7 ");
+        List<String> fandoms = getTags(TagDictionary.Kind.FANDOM);
+        if (!fandoms.isEmpty()) line.add(fandoms.size() == 1 ? fandoms.get(0) : fandoms.get(0) + " +" + (fandoms.size() - 1));
+        if (words > 0) line.add(String.format("%,d words", words));
+        if (chapters > 0) line.add(chapters + "/" + (expectedChapters < 0 ? "?" : expectedChapters) + " chapters");
+        if (kudos > 0) line.add(String.format("%,d kudos", kudos));
+        if (updatedEpochDay >= 0) line.add(getUpdated().toString());
+        return line.toString();
+    }
+
+    // This controls how the object looks in the ListView
+    @Override
+    public String toString() {
+        return title + " by " + getAuthor();
+    }
+}
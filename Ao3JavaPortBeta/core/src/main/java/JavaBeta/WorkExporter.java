@@ -0,0 +1,29 @@
+package JavaBeta;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Turns a saved work into a file for other readers and devices.
+ * <p>
+ * Exporters pull chapters from the {@link StoryContent} one at a time and write them out before
+ * asking for the next, so only one chapter of a stored work is decompressed in memory at once.
+ * Implementations hold no state and may export several works in parallel.
+ */
+public interface WorkExporter {
+
+    /** File extension including the dot, e.g. {@code ".epub"}. */
+    String extension();
+
+    /** Name shown in the UI, e.g. in the file chooser. */
+    String description();
+
+    /** Writes {@code story} to {@code out}; must not close {@code out}. */
+    void export(LibraryEntry entry, StoryContent story, OutputStream out) throws IOException;
+
+    /** The formats the library can export to. */
+    static List<WorkExporter> all() {
+        return List.of(new EpubExporter(), new TextExporter());
+    }
+}
@@ -0,0 +1,39 @@
+package JavaBeta;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches a whole work (every chapter on one page) from AO3 and extracts its story.
+ * <p>
+ * Works behind AO3's adult-content notice are fetched past it. Works restricted to logged-in users
+ * have no story on the page and fail with an {@link IOException}.
+ */
+public final class WorkFetcher {
+
+    private static final WorkFetcher INSTANCE = new WorkFetcher();
+
+    private WorkFetcher() {
+    }
+
+    public static WorkFetcher get() {
+        return INSTANCE;
+    }
+
+    /** The page that holds all of a work's chapters, for a work URL like {@code .../works/123}. */
+    public static String fullWorkUrl(String workUrl) {
+        return workUrl + "?view_full_work=true&view_adult=true";
+    }
+
+    /** Fetches the work in the background. */
+    public CompletableFuture<StoryExtractor.Extracted> fetch(String workUrl) {
+        return Ao3Client.get().async(() -> fetch(workUrl, null));
+    }
+
+    /** Blocking fetch; {@code limiter} may be null for a one-off request. */
+    public StoryExtractor.Extracted fetch(String workUrl, RateLimiter limiter) throws IOException, InterruptedException {
+        StoryExtractor.Extracted work = StoryExtractor.fetch(fullWorkUrl(workUrl), limiter);
+        if (work == null) throw new IOException("No story content (restricted work?)");
+        return work;
+    }
+}
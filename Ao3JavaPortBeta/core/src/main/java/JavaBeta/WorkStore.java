@@ -0,0 +1,313 @@
+package JavaBeta;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compressed, deduplicated storage for saved works.
+ * <p>
+ * Each chapter (plus the work preface and afterword) is stored once as a blob named by the SHA-256
+ * of its markup, under {@code .store/objects} in the library. Blobs are raw deflate streams primed
+ * with a preset dictionary of common AO3 markup, which pays off most on short chapters. A saved
+ * work is a small {@code .ao3work} manifest in the library directory listing its blobs in order,
+ * so re-saving a work in progress only writes the chapters that are new or changed. A blob whose
+ * markup points at stored assets gets a {@code .assets} file beside it listing them, so the asset
+ * sweep can tell which assets are still used without decompressing the library.
+ */
+public final class WorkStore {
+
+    public static final String EXTENSION = ".ao3work";
+    private static final String MANIFEST_HEADER = "AO3WORK 1";
+    private static final int BLOB_VERSION = 1; // Identifies the dictionary below; bump both together
+    private static final String ASSET_REFS = ".assets";
+    // Present once every blob has its .assets file; blobs saved before those existed are scanned once
+    private static final String ASSET_REFS_MARKER = "asset-refs";
+
+    // Strings AO3 repeats in every chapter. Deflate favours matches near the end of the dictionary,
+    // so the most common markup goes last.
+    private static final byte[] DICTIONARY = String.join("",
+            "(See the end of the chapter for <a href=\"#chapter_1_endnotes\">more notes</a>.)",
+            "<div class=\"end notes module\" role=\"complementary\">",
+            "<div class=\"afterword preface group\">",
+            "<div id=\"work_endnotes\" class=\"end notes module\">",
+            "<h3 class=\"heading\">Summary:</h3>",
+            "<h3 class=\"heading\">Notes:</h3>",
+            "<blockquote class=\"userstuff\">",
+            "<div class=\"summary module\" role=\"complementary\">",
+            "<div id=\"notes\" class=\"notes module\" role=\"complementary\">",
+            "<h3 class=\"title\"><a href=\"/works/",
+            "/chapters/",
+            "<div class=\"chapter preface group\" role=\"complementary\">",
+            "<h3 class=\"landmark heading\" id=\"work\">Chapter Text</h3>",
+            "<div class=\"userstuff module\" role=\"article\">",
+            "<div class=\"chapter\" id=\"chapter-",
+            "<p align=\"center\">",
+            "&nbsp;</p>",
+            "<hr>",
+            "<br>",
+            "</strong>",
+            "<strong>",
+            " the ", " and ", " to ", " of ", " was ", " that ", " her ", " his ", " you ", "\"",
+            "</em>",
+            "<em>",
+            "</div>\n",
+            "</p>\n",
+            "<p>"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private final Path libraryDirectory;
+    private final Path objects;
+    private final Path assetRefsMarker;
+    // Works opened lazily that something can still read chapters from; their blobs are never collected
+    private final Set<OpenWork> openWorks = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /** The blobs of one opened work. Reachable exactly as long as its chapter loader is. */
+    private static final class OpenWork {
+        final List<String> blobs;
+        final List<String> chapterHashes;
+
+        OpenWork(List<String> blobs, List<String> chapterHashes) {
+            this.blobs = blobs;
+            this.chapterHashes = chapterHashes;
+        }
+    }
+
+    public WorkStore(Path libraryDirectory) {
+        this.libraryDirectory = libraryDirectory;
+        this.objects = libraryDirectory.resolve(".store").resolve("objects");
+        this.assetRefsMarker = libraryDirectory.resolve(".store").resolve(ASSET_REFS_MARKER);
+    }
+
+    /** What {@link #save} wrote: the manifest, the compressed size of the whole work and its identity hash. */
+    public record SavedWork(Path manifest, long storedBytes, long newBytes, String contentHash) {
+    }
+
+    /**
+     * Saves a work as {@code baseName + ".ao3work"}. Blobs that already exist (unchanged chapters,
+     * or chapters shared with another copy) are not written again.
+     */
+    public SavedWork save(String baseName, StoryContent story) throws IOException {
+        Files.createDirectories(objects);
+        StringBuilder manifest = new StringBuilder(MANIFEST_HEADER).append('\n');
+        long[] sizes = {0, 0}; // stored, newly written
+        if (!story.preface().isEmpty()) manifest.append("P ").append(putBlob(story.preface(), sizes)).append('\n');
+        for (int i = 0; i < story.chapterCount(); i++) {
+            manifest.append("C ").append(putBlob(story.rawChapter(i), sizes)).append('\n');
+        }
+        if (!story.afterword().isEmpty()) manifest.append("A ").append(putBlob(story.afterword(), sizes)).append('\n');
+
+        byte[] manifestBytes = manifest.toString().getBytes(StandardCharsets.UTF_8);
+        Path file = libraryDirectory.resolve(baseName + EXTENSION);
+        LibraryIO.writeAtomically(file, manifestBytes);
+        return new SavedWork(file, sizes[0], sizes[1], sha256(manifestBytes));
+    }
+
+    /** Opens a saved work; chapters are decompressed one at a time when the reader asks for them. */
+    public StoryContent open(Path manifestFile) throws IOException {
+        List<String> lines = Files.readAllLines(manifestFile, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(MANIFEST_HEADER)) {
+            throw new IOException("Not a saved work: " + manifestFile.getFileName());
+        }
+        String preface = "", afterword = "";
+        List<String> blobs = new ArrayList<>();
+        List<String> chapterHashes = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.length() < 3) continue;
+            String hash = line.substring(2);
+            blobs.add(hash);
+            switch (line.charAt(0)) {
+                case 'P' -> preface = readBlob(hash);
+                case 'A' -> afterword = readBlob(hash);
+                case 'C' -> chapterHashes.add(hash);
+                default -> { }
+            }
+        }
+        OpenWork open = new OpenWork(List.copyOf(blobs), List.copyOf(chapterHashes));
+        openWorks.add(open);
+        return StoryContent.lazy(preface, open.chapterHashes.size(), index -> readBlob(open.chapterHashes.get(index)), afterword);
+    }
+
+    /** Size and identity of an already saved work, e.g. one copied into the library from elsewhere. */
+    public SavedWork describe(Path manifestFile) throws IOException {
+        byte[] manifestBytes = Files.readAllBytes(manifestFile);
+        long storedBytes = 0;
+        for (String line : new String(manifestBytes, StandardCharsets.UTF_8).split("\n")) {
+            if (line.length() > 2 && line.charAt(1) == ' ') {
+                Path blob = blobPath(line.substring(2));
+                if (Files.exists(blob)) storedBytes += Files.size(blob);
+            }
+        }
+        return new SavedWork(manifestFile, storedBytes, 0, sha256(manifestBytes));
+    }
+
+    /**
+     * Deletes blobs no manifest refers to any more. Blobs of a work opened earlier are kept while its
+     * content can still be reached, e.g. a reader showing the version a re-save just replaced. Meant
+     * for a background thread.
+     *
+     * @return the hashes of the stored assets the kept blobs point at
+     */
+    public Set<String> collectGarbage() throws IOException {
+        Set<String> usedAssets = new HashSet<>();
+        if (!Files.isDirectory(objects)) return usedAssets;
+        Set<String> referenced = new HashSet<>();
+        synchronized (openWorks) {
+            for (OpenWork open : openWorks) referenced.addAll(open.blobs);
+        }
+        try (Stream<Path> manifests = Files.list(libraryDirectory)) {
+            for (Path manifest : (Iterable<Path>) manifests::iterator) {
+                if (!manifest.getFileName().toString().endsWith(EXTENSION)) continue;
+                for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                    if (line.length() > 2 && line.charAt(1) == ' ') referenced.add(line.substring(2));
+                }
+            }
+        }
+        // Libraries without stored assets have nothing to scan for
+        boolean scanAssets = !Files.exists(assetRefsMarker) && Files.isDirectory(AssetStore.directoryOf(libraryDirectory));
+        try (Stream<Path> shards = Files.list(objects)) {
+            for (Path shard : (Iterable<Path>) shards::iterator) {
+                boolean empty = true;
+                try (Stream<Path> blobs = Files.list(shard)) {
+                    for (Path blob : (Iterable<Path>) blobs::iterator) {
+                        String name = blob.getFileName().toString();
+                        boolean assetRefs = name.endsWith(ASSET_REFS);
+                        String hash = assetRefs ? name.substring(0, name.length() - ASSET_REFS.length()) : name;
+                        if (name.endsWith(".tmp")) {
+                            empty = false;
+                        } else if (!referenced.contains(hash)) {
+                            Files.deleteIfExists(blob);
+                        } else {
+                            empty = false;
+                            if (assetRefs) usedAssets.addAll(readAssetRefs(blob));
+                            else if (scanAssets) usedAssets.addAll(scanAssetRefs(hash));
+                        }
+                    }
+                }
+                if (empty) Files.deleteIfExists(shard);
+            }
+        }
+        if (!Files.exists(assetRefsMarker)) LibraryIO.writeAtomically(assetRefsMarker, new byte[0]);
+        return usedAssets;
+    }
+
+    // --- Blobs ---
+    private Path blobPath(String hash) {
+        return objects.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private String putBlob(String markup, long[] sizes) throws IOException {
+        byte[] raw = markup.getBytes(StandardCharsets.UTF_8);
+        String hash = sha256(raw);
+        Path path = blobPath(hash);
+        if (Files.exists(path)) {
+            sizes[0] += Files.size(path);
+            return hash;
+        }
+        byte[] compressed = compress(raw);
+        Files.createDirectories(path.getParent());
+        // Before the blob, so a blob is never there without the list of assets it uses
+        writeAssetRefs(hash, AssetStore.referencedIn(markup));
+        LibraryIO.writeAtomically(path, compressed);
+        sizes[0] += compressed.length;
+        sizes[1] += compressed.length;
+        return hash;
+    }
+
+    private void writeAssetRefs(String hash, Set<String> assets) throws IOException {
+        if (assets.isEmpty()) return;
+        Path file = blobPath(hash).resolveSibling(hash + ASSET_REFS);
+        LibraryIO.writeAtomically(file, (String.join("\n", assets) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> readAssetRefs(Path file) throws IOException {
+        List<String> assets = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isEmpty()) assets.add(line);
+        }
+        return assets;
+    }
+
+    /** Asset references of a blob saved before {@code .assets} files existed; records them for next time. */
+    private Set<String> scanAssetRefs(String hash) {
+        if (Files.exists(blobPath(hash).resolveSibling(hash + ASSET_REFS))) return Set.of(); // Listed on its own
+        try {
+            Set<String> assets = AssetStore.referencedIn(readBlob(hash));
+            writeAssetRefs(hash, assets);
+            return assets;
+        } catch (IOException e) {
+            System.err.println("Warning: Could not read blob " + hash + ": " + e.getMessage());
+            return Set.of();
+        }
+    }
+
+    /** Streams one blob through the inflater; only this chapter's text is ever in memory. */
+    private String readBlob(String hash) throws IOException {
+        Ao3Events.LibraryIo event = new Ao3Events.LibraryIo();
+        event.begin();
+        long started = System.nanoTime();
+        Path path = blobPath(hash);
+        Inflater inflater = new Inflater(true);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             InputStream file = new BufferedInputStream(Channels.newInputStream(channel))) {
+            int version = file.read();
+            if (version != BLOB_VERSION) throw new IOException("Unsupported blob version " + version + " for " + hash);
+            inflater.setDictionary(DICTIONARY);
+            try (Reader reader = new InputStreamReader(new InflaterInputStream(file, inflater, 16 * 1024), StandardCharsets.UTF_8)) {
+                StringBuilder sb = new StringBuilder();
+                char[] buffer = new char[16 * 1024];
+                for (int n; (n = reader.read(buffer)) != -1; ) sb.append(buffer, 0, n);
+                LibraryIO.recordIo(event, Metrics.LIBRARY_READ, path, channel.size(), started);
+                return sb.toString();
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 3 + 16);
+            out.write(BLOB_VERSION);
+            byte[] chunk = new byte[16 * 1024];
+            while (!deflater.finished()) out.write(chunk, 0, deflater.deflate(chunk));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}